@@ -1,8 +1,9 @@
 -- Paswords: password1, password2, password3
-insert into "user" values (default, 'user1', '$2a$10$QL45PqKz2/CnLpFaY5IDnOhdsYp.lv4/csKvreNQKY1NVJv1dnYXC', 'user1@email.com', '2018-12-22 00:00:00', null, 'ROLE_USER,ROLE_ADMIN');
-insert into "user" values (default, 'user2', '$2a$10$fX0J7FSXfr/9Hs.bJd0bSeZXS918BbCinoFHR5hCntGuS56Km1jwS', 'user2@email.com', '2017-12-22 00:00:00', null, 'ROLE_USER');
-insert into "user" values (default, 'user3', '$2a$10$OG.sjGJXzFhpJA3QCE3MPObdiKj7l27SI4CkkMZHewGML3ZVfULHy', 'user3@email.com', '2018-10-02 00:00:00', null, 'ROLE_USER');
+insert into "user" (username, password, email, created_on, last_login_on, roles) values ('user1', '$2a$10$QL45PqKz2/CnLpFaY5IDnOhdsYp.lv4/csKvreNQKY1NVJv1dnYXC', 'user1@email.com', '2018-12-22 00:00:00', null, 'ROLE_USER,ROLE_ADMIN');
+insert into "user" (username, password, email, created_on, last_login_on, roles) values ('user2', '$2a$10$fX0J7FSXfr/9Hs.bJd0bSeZXS918BbCinoFHR5hCntGuS56Km1jwS', 'user2@email.com', '2017-12-22 00:00:00', null, 'ROLE_USER');
+insert into "user" (username, password, email, created_on, last_login_on, roles) values ('user3', '$2a$10$OG.sjGJXzFhpJA3QCE3MPObdiKj7l27SI4CkkMZHewGML3ZVfULHy', 'user3@email.com', '2018-10-02 00:00:00', null, 'ROLE_USER');
 
-insert into todo values (default, 1, 'Todo1_1', 'Description1', '2018-10-02 00:00:00', 'MEDIUM', 'IN_PROGRESS');
-insert into todo values (default, 1, 'Todo1_2', 'Description2', '2018-10-02 00:00:00', 'LOW', 'IN_PROGRESS');
-insert into todo values (default, 3, 'Todo3_1', 'Description1', '2018-10-02 00:00:00', 'HIGH', 'IN_PROGRESS') ;
+-- Priority and status are TodoPriority and TodoStatus codes: LOW 0, MEDIUM 1, HIGH 2; NOT_STARTED 0, IN_PROGRESS 1, DONE 2
+insert into todo (user_id, title, description, created_on, priority, status) values (1, 'Todo1_1', 'Description1', '2018-10-02 00:00:00', 1, 1);
+insert into todo (user_id, title, description, created_on, priority, status) values (1, 'Todo1_2', 'Description2', '2018-10-02 00:00:00', 0, 1);
+insert into todo (user_id, title, description, created_on, priority, status) values (3, 'Todo3_1', 'Description1', '2018-10-02 00:00:00', 2, 1);
@@ -5,3 +5,6 @@ create database db_todo;
 
 grant all privileges on database db_todo to todo_flyway;
 
+-- The migrations hash existing auth tokens with pgcrypto, which only a superuser can create
+\connect db_todo
+create extension pgcrypto;
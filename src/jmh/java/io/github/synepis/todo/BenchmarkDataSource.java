@@ -0,0 +1,19 @@
+package io.github.synepis.todo;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * The docker compose database, migrated by the application, for benchmarks of statements. Point them elsewhere
+ * with {@code -Dbenchmark.datasource.url}.
+ */
+public class BenchmarkDataSource {
+
+    public static HikariDataSource create() {
+        var dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("benchmark.datasource.url", "jdbc:postgresql://localhost:15432/db_todo"));
+        dataSource.setUsername("todo");
+        dataSource.setPassword("Password@123");
+        dataSource.setMaximumPoolSize(1);
+        return dataSource;
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.synepis.todo.login;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.synepis.todo.BenchmarkDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token lookup through a unique index on SHA-256 digests as bytea, next to the one on varchar tokens it
+ * replaced ({@code legacy*}), over {@value #ROWS} rows in scratch tables. The setup prints both index sizes.
+ * Run with {@code ./gradlew jmh} while the docker compose database is up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AuthTokenDigestBenchmark {
+
+    private static final int ROWS = 50_000;
+
+    private static final int LOOKUP_KEYS = 1_000;
+
+    private HikariDataSource dataSource;
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    private List<String> tokens;
+
+    private List<byte[]> digests;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        dataSource = BenchmarkDataSource.create();
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+
+        dropTables();
+        jdbcTemplate.update("create table token_varchar (auth_token varchar(300) not null unique)", Map.of());
+        jdbcTemplate.update("create table token_digest (auth_token_hash bytea not null unique)", Map.of());
+        jdbcTemplate.update(
+                "insert into token_varchar select md5(i::text)::uuid::text from generate_series(1, :rows) i",
+                Map.of("rows", ROWS));
+        jdbcTemplate.update(
+                "insert into token_digest select decode(md5(i::text) || md5((-i)::text), 'hex') " +
+                        "from generate_series(1, :rows) i",
+                Map.of("rows", ROWS));
+        jdbcTemplate.update("analyze token_varchar", Map.of());
+        jdbcTemplate.update("analyze token_digest", Map.of());
+
+        tokens = jdbcTemplate.queryForList(
+                "select auth_token from token_varchar limit :limit", Map.of("limit", LOOKUP_KEYS), String.class);
+        digests = jdbcTemplate.queryForList(
+                "select auth_token_hash from token_digest limit :limit", Map.of("limit", LOOKUP_KEYS), byte[].class);
+
+        System.out.printf("Token index for %d rows: sha-256 bytea %d kB, varchar %d kB%n",
+                ROWS, indexSize("token_digest") / 1024, indexSize("token_varchar") / 1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dropTables();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<Integer> lookup() {
+        return jdbcTemplate.queryForList(
+                "select 1 from token_digest where auth_token_hash = :token",
+                Map.of("token", digests.get(next++ % digests.size())), Integer.class);
+    }
+
+    @Benchmark
+    public List<Integer> legacyLookup() {
+        return jdbcTemplate.queryForList(
+                "select 1 from token_varchar where auth_token = :token",
+                Map.of("token", tokens.get(next++ % tokens.size())), Integer.class);
+    }
+
+    private long indexSize(String table) {
+        return jdbcTemplate.queryForObject(
+                "select sum(pg_relation_size(indexrelid)) from pg_index where indrelid = cast(:table as regclass)",
+                Map.of("table", table), Long.class);
+    }
+
+    private void dropTables() {
+        jdbcTemplate.update("drop table if exists token_varchar", Map.of());
+        jdbcTemplate.update("drop table if exists token_digest", Map.of());
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.synepis.todo.login;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.synepis.todo.BenchmarkDataSource;
+import io.github.synepis.todo.user.User;
+import io.github.synepis.todo.user.UserRepository;
+import io.github.synepis.todo.user.UserRole;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request principal lookup of an opaque token in a single joined query, next to the login and then user
+ * lookups it replaced ({@code legacy*}), over {@value #USERS} users with a login each. Run with
+ * {@code ./gradlew jmh} while the docker compose database is up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PrincipalLookupBenchmark {
+
+    private static final int USERS = 100;
+
+    private HikariDataSource dataSource;
+
+    private UserRepository userRepository;
+
+    private UserLoginRepository userLoginRepository;
+
+    private final List<User> users = new ArrayList<>();
+
+    private final List<String> tokens = new ArrayList<>();
+
+    private Instant now;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        dataSource = BenchmarkDataSource.create();
+        var jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        userRepository = new UserRepository(jdbcTemplate);
+        userLoginRepository = new UserLoginRepository(jdbcTemplate);
+
+        now = Instant.now();
+        var run = UUID.randomUUID().toString().substring(0, 8);
+        for (int i = 0; i < USERS; i++) {
+            var user = userRepository.insert(User.builder()
+                    .username("benchmark_" + run + "_" + i)
+                    .password("password")
+                    .email("benchmark_" + run + "_" + i + "@mail.com")
+                    .createdOn(now)
+                    .roles(Set.of(UserRole.ROLE_USER))
+                    .build());
+            var token = UUID.randomUUID().toString();
+            userLoginRepository.insert(UserLogin.builder()
+                    .userId(user.getId())
+                    .authToken(token)
+                    .createdOn(now)
+                    .expiresOn(now.plusSeconds(3600))
+                    .build());
+            users.add(user);
+            tokens.add(token);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (var user : users) {
+            userLoginRepository.deleteAllForUserId(user.getId());
+            userRepository.delete(user);
+        }
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Set<UserRole> lookup() {
+        return userLoginRepository.findPrincipalByAuthToken(nextToken(), now).get().getRoles();
+    }
+
+    @Benchmark
+    public Set<UserRole> legacyLookup() {
+        var login = userLoginRepository.findByAuthToken(nextToken()).get();
+        return userRepository.findById(login.getUserId()).get().getRoles();
+    }
+
+    private String nextToken() {
+        return tokens.get(next++ % tokens.size());
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.synepis.todo.security;
+
+import io.github.synepis.todo.login.LoginPrincipal;
+import io.github.synepis.todo.login.UserLoginRenewals;
+import io.github.synepis.todo.notification.PostgresNotificationBus;
+import io.github.synepis.todo.user.UserActivityRecorder;
+import io.github.synepis.todo.user.UserRole;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Per-request cost of the filter -> provider -> authorization path for a cached opaque token, next to the
+ * header lookup and role check it replaced ({@code legacy*}). Run with {@code ./gradlew jmh} and compare
+ * {@code gc.alloc.rate.norm} (bytes per request) as well as the average time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuthenticationPathBenchmark {
+
+    private static final String TOKEN = "0b6a4a6c-8cbb-4a8c-9f31-6f1a9d3e2f10";
+
+    private static final long USER_ID = 1;
+
+    private static final long OTHER_USER_ID = 2;
+
+    private final AuthTokenFilter authTokenFilter = new AuthTokenFilter();
+
+    private final FilterChain filterChain = (request, response) -> { };
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    private MockHttpServletRequest request;
+
+    private AuthProvider authProvider;
+
+    private AuthorizationService authorizationService;
+
+    private AuthTokenContainer authenticated;
+
+    @Setup
+    public void setup() {
+        request = new MockHttpServletRequest("GET", "/users/" + OTHER_USER_ID);
+        request.addHeader("Host", "localhost:8080");
+        request.addHeader("Accept", "application/json");
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+        request.addHeader("User-Agent", "benchmark");
+        request.addHeader("X-Auth-Token", TOKEN);
+
+        var clock = Clock.systemUTC();
+        var meterRegistry = new SimpleMeterRegistry();
+        var authTokenCache = new AuthTokenCache(new PostgresNotificationBus(null, null), meterRegistry, 100);
+        authProvider = new AuthProvider(
+                clock, null, authTokenCache, new SignedAuthTokens(AuthTokenMode.OPAQUE, ""), null,
+                new UserActivityRecorder(null, meterRegistry, 100, 100),
+                new UserLoginRenewals(null, meterRegistry, 3600, 60, 86400, 100, 100));
+        authorizationService = new AuthorizationService();
+
+        authenticated = new AuthTokenContainer(TOKEN, USER_ID, Set.of(UserRole.ROLE_USER));
+        var now = clock.instant();
+        var principal = LoginPrincipal.builder()
+                .loginId(1)
+                .userId(USER_ID)
+                .roles(Set.of(UserRole.ROLE_USER))
+                .createdOn(now)
+                .expiresOn(now.plusSeconds(3600))
+                .build();
+        authTokenCache.put(authenticated, principal, now, authTokenCache.generation());
+    }
+
+    @Benchmark
+    public boolean authenticatedRequest() throws Exception {
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+        var context = SecurityContextHolder.getContext();
+        context.setAuthentication(authProvider.authenticate(context.getAuthentication()));
+        return authorizationService.isAdminOrOwner(OTHER_USER_ID);
+    }
+
+    @Benchmark
+    public String tokenHeader() {
+        return request.getHeader("x-auth-token");
+    }
+
+    @Benchmark
+    public String legacyTokenHeader() {
+        return legacyTokenHeader(request);
+    }
+
+    @Benchmark
+    public boolean hasRole() {
+        return authenticated.hasRole(UserRole.ROLE_ADMIN);
+    }
+
+    @Benchmark
+    public boolean legacyHasRole() {
+        return authenticated.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet())
+                .contains(UserRole.ROLE_ADMIN.name());
+    }
+
+    private static String legacyTokenHeader(HttpServletRequest req) {
+        return Collections.list(req.getHeaderNames()).stream()
+                .filter(header -> header.equalsIgnoreCase("x-auth-token"))
+                .map(req::getHeader)
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.synepis.todo.todo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row and per-statement cost of the todo repository: positional row mapping of priority and status codes and
+ * constant statements, next to the by-name mapping of enum names and per-call statement building they replaced
+ * ({@code legacy*}). The result set stub looks names up the way the driver does, through a name to index map.
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TodoRepositoryBenchmark {
+
+    private static final String[] NAMES = {
+            "id", "user_id", "title", "description", "created_on", "priority", "status", "version"};
+
+    private static final String COLUMNS = "id, user_id, title, description, created_on, priority, status, version";
+
+    private static final String FIND_BY_ID_SQL = "select " + COLUMNS + " from todo where id = :id";
+
+    private final TodoRepository todoRepository = new TodoRepository(null);
+
+    private final ParsingTemplate parsingTemplate = new ParsingTemplate();
+
+    /* Not constant, like the String.join it stands in for */
+    private String legacyColumns = String.join(", ", NAMES);
+
+    private ResultSet resultSet;
+
+    @Setup
+    public void setup() {
+        Object[] values = {
+                1L, 2L, "Write the report", "Quarterly numbers for the board", Timestamp.from(Instant.now()),
+                TodoPriority.HIGH.name(), TodoStatus.IN_PROGRESS.name(), 42L};
+        var codes = new short[values.length];
+        codes[5] = TodoPriority.HIGH.getCode();
+        codes[6] = TodoStatus.IN_PROGRESS.getCode();
+        var indexByName = new HashMap<String, Integer>();
+        for (int i = 0; i < NAMES.length; i++) {
+            indexByName.put(NAMES[i], i + 1);
+        }
+
+        resultSet = (ResultSet) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { ResultSet.class },
+                (proxy, method, args) -> {
+                    var column = args[0] instanceof String
+                            ? findColumn(indexByName, (String) args[0])
+                            : (Integer) args[0];
+                    return method.getName().equals("getShort") ? codes[column - 1] : values[column - 1];
+                });
+    }
+
+    @Benchmark
+    public Todo mapRow() throws SQLException {
+        return todoRepository.mapRow(resultSet, 0);
+    }
+
+    @Benchmark
+    public Todo legacyMapRow() throws SQLException {
+        return Todo.builder()
+                .id(resultSet.getLong("id"))
+                .userId(resultSet.getLong("user_id"))
+                .title(resultSet.getString("title"))
+                .description(resultSet.getString("description"))
+                .createdOn(resultSet.getTimestamp("created_on").toInstant())
+                .priority(TodoPriority.valueOf(resultSet.getString("priority")))
+                .status(TodoStatus.valueOf(resultSet.getString("status")))
+                .version(resultSet.getLong("version"))
+                .build();
+    }
+
+    @Benchmark
+    public ParsedSql statement() {
+        return parsingTemplate.parse(FIND_BY_ID_SQL);
+    }
+
+    @Benchmark
+    public ParsedSql legacyStatement() {
+        return parsingTemplate.parse("select " + legacyColumns + " from " + "todo" + " where " + "id" + " = :" + "id");
+    }
+
+    private static int findColumn(HashMap<String, Integer> indexByName, String name) throws SQLException {
+        var index = indexByName.get(name);
+        if (index == null) {
+            index = indexByName.get(name.toLowerCase(Locale.US));
+        }
+        if (index == null) {
+            throw new SQLException("No column " + name);
+        }
+        return index;
+    }
+
+    /* The statement text as the template sees it, looked up in its parsed statement cache */
+    private static class ParsingTemplate extends NamedParameterJdbcTemplate {
+
+        private ParsingTemplate() {
+            super(new JdbcTemplate());
+        }
+
+        private ParsedSql parse(String sql) {
+            return getParsedSql(sql);
+        }
+    }
+}
@@ -2,11 +2,13 @@ package io.github.synepis.todo.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.time.Clock;
 import java.time.ZoneId;
 
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
     @Bean
@@ -0,0 +1,74 @@
+package io.github.synepis.todo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.github.synepis.todo.datasource.ReadYourWrites;
+import io.github.synepis.todo.datasource.ReplicaRoutingDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+
+/**
+ * Replaces the single data source with one that routes read-only transactions to the configured replicas.
+ * Every pool, the primary's included, takes the {@code spring.datasource} credentials and Hikari settings.
+ */
+@Configuration
+@ConditionalOnExpression("!'${datasource.replica.urls:}'.isEmpty()")
+public class ReplicaDataSourceConfig {
+
+    private final Environment environment;
+
+    private final DataSourceProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    public ReplicaDataSourceConfig(Environment environment,
+                                   DataSourceProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            ReadYourWrites readYourWrites,
+            @Value("${datasource.replica.urls}") String[] urls,
+            @Value("${datasource.replica.max-lag}") long maxLag) {
+        var replicas = new LinkedHashMap<String, HikariDataSource>();
+        for (int i = 0; i < urls.length; i++) {
+            var name = "replica-" + (i + 1);
+            replicas.put(name, pool(name, urls[i].trim()));
+        }
+        return new ReplicaRoutingDataSource(
+                pool("primary", properties.determineUrl()), replicas, readYourWrites, meterRegistry, maxLag);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    private HikariDataSource pool(String name, String url) {
+        var dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(name);
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return dataSource;
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.synepis.todo.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Users whose data was written recently, whose reads must therefore not be served by a replica that may not
+ * have caught up yet.
+ *
+ * Every write request pins its user locally. Todo writes already notify every node through the todo list
+ * invalidations, so {@link io.github.synepis.todo.todo.TodoListCache} pins the user cluster-wide, before it
+ * evicts their pages, and every user should those have been missed. The thread's current user, set per request,
+ * decides which user a read is for.
+ */
+@Component
+public class ReadYourWrites {
+
+    private static final ThreadLocal<Long> CURRENT_USER_ID = new ThreadLocal<>();
+
+    private final Clock clock;
+
+    private final long windowMillis;
+
+    /* userId -> written on, in millis */
+    private final Cache<Long, Long> writtenOn;
+
+    /* Every user is pinned until then, in millis */
+    private volatile long allPinnedUntil;
+
+    public ReadYourWrites(Clock clock,
+                          @Value("${datasource.replica.read-your-writes.window}") long window,
+                          @Value("${datasource.replica.read-your-writes.maximum-size}") long maximumSize) {
+        this.clock = clock;
+        this.windowMillis = window;
+        this.writtenOn = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(window))
+                .build();
+    }
+
+    public static Long currentUserId() {
+        return CURRENT_USER_ID.get();
+    }
+
+    public static void setCurrentUserId(Long userId) {
+        if (userId == null) {
+            CURRENT_USER_ID.remove();
+        } else {
+            CURRENT_USER_ID.set(userId);
+        }
+    }
+
+    public void recordWrite(long userId) {
+        writtenOn.put(userId, clock.millis());
+    }
+
+    public boolean isRecentlyWritten(long userId) {
+        if (clock.millis() < allPinnedUntil) {
+            return true;
+        }
+        var millis = writtenOn.getIfPresent(userId);
+        return millis != null && clock.millis() - millis < windowMillis;
+    }
+
+    public void recordWriteForAll() {
+        allPinnedUntil = clock.millis() + windowMillis;
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.synepis.todo.datasource;
+
+import io.github.synepis.todo.security.AuthTokenContainer;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Sets the user a request is about for {@link ReadYourWrites}: the user in the path if there is one, otherwise
+ * the caller. Requests that may write pin that user before the handler runs, so no read of the same user can
+ * reach a replica between their commit and the pin.
+ */
+@Component
+public class ReadYourWritesInterceptor implements AsyncHandlerInterceptor {
+
+    private final ReadYourWrites readYourWrites;
+
+    public ReadYourWritesInterceptor(ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        var userId = userId(request);
+        if (userId != null && !isSafe(request.getMethod())) {
+            readYourWrites.recordWrite(userId);
+        }
+        ReadYourWrites.setCurrentUserId(userId);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        ReadYourWrites.setCurrentUserId(null);
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        ReadYourWrites.setCurrentUserId(null);
+    }
+
+    private static Long userId(HttpServletRequest request) {
+        @SuppressWarnings("unchecked")
+        var pathVariables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (pathVariables != null && pathVariables.containsKey("userId")) {
+            try {
+                return Long.parseLong(pathVariables.get("userId"));
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof AuthTokenContainer && authentication.isAuthenticated()) {
+            return ((AuthTokenContainer) authentication).getUserId();
+        }
+        return null;
+    }
+
+    private static boolean isSafe(String method) {
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method);
+    }
+}
@@ -0,0 +1,165 @@
+package io.github.synepis.todo.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to a streaming replica and everything else to the primary.
+ *
+ * A read falls back to the primary when its user wrote recently ({@link ReadYourWrites}) or when no replica is
+ * within the allowed lag. Reads for the same user stick to the same replica, so a user never sees their data
+ * go back in time between two replicas, nor between two queries of the same request.
+ *
+ * The routing decision needs the transaction's read-only flag, which is only set after the transaction has
+ * taken its connection, so this has to sit behind a lazy connection proxy.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    private final HikariDataSource primary;
+
+    private final Map<String, HikariDataSource> replicas;
+
+    private final ReadYourWrites readYourWrites;
+
+    private final long maxLagMillis;
+
+    private final NamedParameterJdbcTemplate primaryJdbcTemplate;
+
+    private final Map<String, NamedParameterJdbcTemplate> replicaJdbcTemplates = new LinkedHashMap<>();
+
+    /* replica -> lag in millis at the last check, absent if it could not be checked */
+    private final Map<String, Double> lagMillis = new ConcurrentHashMap<>();
+
+    /* Replicas within the allowed lag, in configuration order */
+    private volatile List<String> available = List.of();
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter routedToPrimary;
+
+    private final Counter routedToReplica;
+
+    private final Counter fellBack;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary,
+                                    Map<String, HikariDataSource> replicas,
+                                    ReadYourWrites readYourWrites,
+                                    MeterRegistry meterRegistry,
+                                    long maxLagMillis) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.readYourWrites = readYourWrites;
+        this.maxLagMillis = maxLagMillis;
+        this.primaryJdbcTemplate = new NamedParameterJdbcTemplate(primary);
+
+        var targets = new HashMap<Object, Object>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        this.routedToPrimary = meterRegistry.counter("datasource.routed", "target", "primary");
+        this.routedToReplica = meterRegistry.counter("datasource.routed", "target", "replica");
+        this.fellBack = meterRegistry.counter("datasource.replica.fallbacks");
+        for (var replica : replicas.entrySet()) {
+            replicaJdbcTemplates.put(replica.getKey(), new NamedParameterJdbcTemplate(replica.getValue()));
+            meterRegistry.gauge("datasource.replica.lag", Tags.of("replica", replica.getKey()), lagMillis,
+                    lags -> lags.getOrDefault(replica.getKey(), Double.NaN));
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            routedToPrimary.increment();
+            return PRIMARY;
+        }
+
+        var userId = ReadYourWrites.currentUserId();
+        var candidates = available;
+        if (candidates.isEmpty() || (userId != null && readYourWrites.isRecentlyWritten(userId))) {
+            fellBack.increment();
+            routedToPrimary.increment();
+            return PRIMARY;
+        }
+
+        var index = userId != null ? Long.hashCode(userId) : next.getAndIncrement();
+        routedToReplica.increment();
+        return candidates.get(Math.floorMod(index, candidates.size()));
+    }
+
+    /**
+     * Measures every replica against the primary's current WAL position. A replica that has replayed up to it has
+     * no lag, otherwise its lag is the age of the last transaction it replayed.
+     */
+    @Scheduled(fixedDelayString = "${datasource.replica.lag-check-interval}")
+    public void checkLag() {
+        String position;
+        try {
+            position = primaryJdbcTemplate.queryForObject(
+                    "select cast(pg_current_xlog_location() as text)", Map.of(), String.class);
+        } catch (RuntimeException ex) {
+            log.warn("Failed to read the primary's WAL position, keeping replica state", ex);
+            return;
+        }
+
+        for (var replica : replicaJdbcTemplates.entrySet()) {
+            Double lag;
+            try {
+                lag = replica.getValue().queryForObject(
+                        "select case when pg_last_xlog_replay_location() >= cast(:position as pg_lsn) then 0" +
+                                " else extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000 end",
+                        Map.of("position", position),
+                        Double.class);
+            } catch (RuntimeException ex) {
+                log.warn("Failed to check the lag of replica {}", replica.getKey(), ex);
+                lag = null;
+            }
+            updateLag(replica.getKey(), lag);
+        }
+    }
+
+    void updateLag(String replica, Double lag) {
+        if (lag == null) {
+            lagMillis.remove(replica);
+        } else {
+            lagMillis.put(replica, lag);
+        }
+
+        var updated = new ArrayList<String>(replicas.size());
+        for (var name : replicas.keySet()) {
+            var replicaLag = lagMillis.get(name);
+            if (replicaLag != null && replicaLag <= maxLagMillis) {
+                updated.add(name);
+            }
+        }
+        if (!updated.equals(available)) {
+            log.info("Replicas available for reads: {}", updated);
+        }
+        available = List.copyOf(updated);
+    }
+
+    @Override
+    public void close() {
+        replicas.values().forEach(HikariDataSource::close);
+        primary.close();
+    }
+}
@@ -0,0 +1,9 @@
+package io.github.synepis.todo.exception;
+
+public class BadRequestException extends RuntimeException {
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+
+}
@@ -1,12 +1,15 @@
 package io.github.synepis.todo.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.time.Clock;
 import java.time.Instant;
@@ -52,6 +55,82 @@ public class GlobalExceptionHandler {
                 HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<ApiError> handleMethodArgumentTypeMismatchException(MethodArgumentTypeMismatchException ex) {
+        var errorMessage = ex.getName() + ": invalid value '" + ex.getValue() + "'";
+
+        return new ResponseEntity<>(
+                ApiError.builder()
+                        .status(HttpStatus.BAD_REQUEST.name())
+                        .userMessages(List.of(errorMessage))
+                        .debugMessages(List.of(ex.getMessage()))
+                        .createdOn(clock.instant())
+                        .build(),
+                HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(MissingServletRequestParameterException.class)
+    public ResponseEntity<ApiError> handleMissingServletRequestParameterException(MissingServletRequestParameterException ex) {
+        var errorMessage = ex.getParameterName() + ": must not be missing";
+
+        return new ResponseEntity<>(
+                ApiError.builder()
+                        .status(HttpStatus.BAD_REQUEST.name())
+                        .userMessages(List.of(errorMessage))
+                        .debugMessages(List.of(ex.getMessage()))
+                        .createdOn(clock.instant())
+                        .build(),
+                HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<ApiError> handleBadRequestException(BadRequestException ex) {
+        return new ResponseEntity<>(
+                ApiError.builder()
+                        .status(HttpStatus.BAD_REQUEST.name())
+                        .userMessages(List.of(ex.getMessage()))
+                        .debugMessages(List.of(ex.getMessage()))
+                        .createdOn(clock.instant())
+                        .build(),
+                HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(ResourceNotFoundException.class)
+    public ResponseEntity<ApiError> handleResourceNotFoundException(ResourceNotFoundException ex) {
+        return new ResponseEntity<>(
+                ApiError.builder()
+                        .status(HttpStatus.NOT_FOUND.name())
+                        .userMessages(List.of(ex.getMessage()))
+                        .debugMessages(List.of(ex.getMessage()))
+                        .createdOn(clock.instant())
+                        .build(),
+                HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ApiError> handlePreconditionFailedException(PreconditionFailedException ex) {
+        return new ResponseEntity<>(
+                ApiError.builder()
+                        .status(HttpStatus.PRECONDITION_FAILED.name())
+                        .userMessages(List.of(ex.getMessage()))
+                        .debugMessages(List.of(ex.getMessage()))
+                        .createdOn(clock.instant())
+                        .build(),
+                HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(GoneException.class)
+    public ResponseEntity<ApiError> handleGoneException(GoneException ex) {
+        return new ResponseEntity<>(
+                ApiError.builder()
+                        .status(HttpStatus.GONE.name())
+                        .userMessages(List.of(ex.getMessage()))
+                        .debugMessages(List.of(ex.getMessage()))
+                        .createdOn(clock.instant())
+                        .build(),
+                HttpStatus.GONE);
+    }
+
     @ExceptionHandler(BadCredentialsException.class)
     private ResponseEntity<ApiError> handleBadCredentialsException(BadCredentialsException ex) {
         return new ResponseEntity<>(
@@ -64,6 +143,31 @@ public class GlobalExceptionHandler {
                 HttpStatus.UNAUTHORIZED);
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ApiError> handleServiceUnavailableException(ServiceUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ApiError.builder()
+                        .status(HttpStatus.SERVICE_UNAVAILABLE.name())
+                        .userMessages(List.of("Service is busy, please try again"))
+                        .debugMessages(List.of(ex.getMessage()))
+                        .createdOn(clock.instant())
+                        .build());
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ApiError> handleTooManyRequestsException(TooManyRequestsException ex) {
+        var retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(ApiError.builder()
+                        .status(HttpStatus.TOO_MANY_REQUESTS.name())
+                        .userMessages(List.of("Too many attempts, please try again later"))
+                        .debugMessages(List.of(ex.getMessage()))
+                        .createdOn(clock.instant())
+                        .build());
+    }
+
     @ExceptionHandler(Exception.class)
     private ResponseEntity<ApiError> defaultExceptionHandler(Exception ex) {
         return new ResponseEntity<>(
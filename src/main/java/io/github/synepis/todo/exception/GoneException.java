@@ -0,0 +1,9 @@
+package io.github.synepis.todo.exception;
+
+public class GoneException extends RuntimeException {
+
+    public GoneException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package io.github.synepis.todo.exception;
+
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+
+}
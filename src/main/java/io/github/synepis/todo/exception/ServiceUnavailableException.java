@@ -0,0 +1,9 @@
+package io.github.synepis.todo.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,26 @@
+package io.github.synepis.todo.login;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Auth tokens are only ever stored as their SHA-256 digest. Tokens are random, so an unsalted digest is
+ * enough to keep a copy of the table from yielding usable tokens.
+ */
+public class AuthTokenDigest {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(AuthTokenDigest::newDigest);
+
+    public static byte[] sha256(String authToken) {
+        return SHA_256.get().digest(authToken.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
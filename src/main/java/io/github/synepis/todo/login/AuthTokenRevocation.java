@@ -0,0 +1,27 @@
+package io.github.synepis.todo.login;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.experimental.Wither;
+
+import java.time.Instant;
+
+/**
+ * A revoked login (when {@code loginId} is set) or all logins of a user issued up to {@code revokedOn}
+ * (when {@code userId} is set).
+ */
+@Value
+@Builder
+@Wither
+public class AuthTokenRevocation {
+
+    private long id;
+
+    private Long loginId;
+
+    private Long userId;
+
+    @NonNull
+    private Instant revokedOn;
+}
@@ -0,0 +1,76 @@
+package io.github.synepis.todo.login;
+
+import io.github.synepis.todo.utils.SqlUtils;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+@Repository
+public class AuthTokenRevocationRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public AuthTokenRevocationRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<AuthTokenRevocation> findRevokedSince(Instant since) {
+        return jdbcTemplate.query(
+                "select " + COLUMNS + " from " + TABLE_NAME + " where " + FIELD_REVOKED_ON + " > :" + FIELD_REVOKED_ON +
+                        " order by " + FIELD_ID,
+                Map.of(FIELD_REVOKED_ON, Timestamp.from(since)),
+                this::mapRow);
+    }
+
+    public AuthTokenRevocation insert(AuthTokenRevocation revocation) {
+        var keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(
+                "insert into " + TABLE_NAME + "(" +
+                        FIELD_LOGIN_ID + ", " +
+                        FIELD_USER_ID + ", " +
+                        FIELD_REVOKED_ON + ") " +
+                        " values (" +
+                        ":" + FIELD_LOGIN_ID + ", " +
+                        ":" + FIELD_USER_ID + ", " +
+                        ":" + FIELD_REVOKED_ON + ")",
+                SqlUtils.parameterMap(
+                        FIELD_LOGIN_ID, revocation.getLoginId(),
+                        FIELD_USER_ID, revocation.getUserId(),
+                        FIELD_REVOKED_ON, Timestamp.from(revocation.getRevokedOn())),
+                keyHolder);
+        return revocation.withId((Long) Objects.requireNonNull(keyHolder.getKeys()).get(FIELD_ID));
+    }
+
+    public int deleteRevokedBefore(Instant before) {
+        return jdbcTemplate.update(
+                "delete from " + TABLE_NAME + " where " + FIELD_REVOKED_ON + " < :" + FIELD_REVOKED_ON,
+                Map.of(FIELD_REVOKED_ON, Timestamp.from(before)));
+    }
+
+    private final String TABLE_NAME = "auth_token_revocation";
+
+    private final String FIELD_ID = "id";
+    private final String FIELD_LOGIN_ID = "login_id";
+    private final String FIELD_USER_ID = "user_id";
+    private final String FIELD_REVOKED_ON = "revoked_on";
+
+    private final String COLUMNS = FIELD_ID + ", " + FIELD_LOGIN_ID + ", " + FIELD_USER_ID + ", " + FIELD_REVOKED_ON;
+
+    // By position in COLUMNS
+    private AuthTokenRevocation mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return AuthTokenRevocation.builder()
+                .id(rs.getLong(1))
+                .loginId(rs.getObject(2, Long.class))
+                .userId(rs.getObject(3, Long.class))
+                .revokedOn(rs.getTimestamp(4).toInstant())
+                .build();
+    }
+}
@@ -0,0 +1,32 @@
+package io.github.synepis.todo.login;
+
+import io.github.synepis.todo.user.UserRole;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.experimental.Wither;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * The part of a login and its user needed to authenticate a request.
+ */
+@Value
+@Builder
+@Wither
+public class LoginPrincipal {
+
+    private long loginId;
+
+    private long userId;
+
+    @NonNull
+    private Set<UserRole> roles;
+
+    @NonNull
+    private Instant createdOn;
+
+    @NonNull
+    private Instant expiresOn;
+}
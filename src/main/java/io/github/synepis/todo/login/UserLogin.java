@@ -17,7 +17,7 @@ public class UserLogin {
 
     private long userId;
 
-    @NonNull
+    /* Only known when the login is created, the database keeps a digest of it */
     private String authToken;
 
     @NonNull
@@ -31,7 +31,6 @@ public class UserLogin {
         return new ToStringBuilder(this)
                 .append("id", id)
                 .append("userId", userId)
-                .append("authToken", authToken)
                 .append("createdOn", createdOn)
                 .append("expiresOn", expiresOn)
                 .build();
@@ -1,24 +1,38 @@
 package io.github.synepis.todo.login;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.synepis.todo.exception.ResourceNotFoundException;
 import io.github.synepis.todo.login.dto.CreateLoginRequest;
 import io.github.synepis.todo.login.dto.UserLoginDto;
+import io.github.synepis.todo.security.AuthTokenRevocations;
+import io.github.synepis.todo.security.LoginThrottle;
+import io.github.synepis.todo.security.PasswordHasher;
+import io.github.synepis.todo.security.SignedAuthTokens;
 import io.github.synepis.todo.security.annotations.AuthorizedAsAdmin;
 import io.github.synepis.todo.security.annotations.AuthorizedAsAdminOrOwner;
 import io.github.synepis.todo.user.User;
+import io.github.synepis.todo.user.UserActivityRecorder;
 import io.github.synepis.todo.user.UserRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.time.Clock;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
+import static io.github.synepis.todo.utils.FutureUtils.unwrapped;
+import static io.github.synepis.todo.utils.JsonUtils.streamJsonArray;
+
 @Slf4j
 @RestController
 public class UserLoginController {
@@ -29,28 +43,51 @@ public class UserLoginController {
 
     private final Clock clock;
 
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
+
+    private final LoginThrottle loginThrottle;
+
+    private final UserActivityRecorder userActivityRecorder;
+
+    private final AuthTokenRevocations authTokenRevocations;
+
+    private final SignedAuthTokens signedAuthTokens;
+
+    private final ObjectMapper objectMapper;
+
+    private final Executor requestExecutor;
 
     private final long autTokenLifetime;
 
     public UserLoginController(UserRepository userRepository,
                                UserLoginRepository userLoginRepository,
                                Clock clock,
-                               PasswordEncoder passwordEncoder,
+                               PasswordHasher passwordHasher,
+                               LoginThrottle loginThrottle,
+                               UserActivityRecorder userActivityRecorder,
+                               AuthTokenRevocations authTokenRevocations,
+                               SignedAuthTokens signedAuthTokens,
+                               ObjectMapper objectMapper,
+                               @Qualifier("applicationTaskExecutor") Executor requestExecutor,
                                @Value("${security.token.auth-token-lifetime}") long autTokenLifetime) {
         this.userRepository = userRepository;
         this.userLoginRepository = userLoginRepository;
         this.clock = clock;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
+        this.loginThrottle = loginThrottle;
+        this.userActivityRecorder = userActivityRecorder;
+        this.authTokenRevocations = authTokenRevocations;
+        this.signedAuthTokens = signedAuthTokens;
+        this.objectMapper = objectMapper;
+        this.requestExecutor = requestExecutor;
         this.autTokenLifetime = autTokenLifetime;
     }
 
     @GetMapping("/logins")
     @AuthorizedAsAdmin
-    public List<UserLoginDto> getAllLogins() {
-        return userLoginRepository.findAll().stream()
-                .map(UserLoginDto::map)
-                .collect(Collectors.toList());
+    public ResponseEntity<StreamingResponseBody> getAllLogins() {
+        return streamJsonArray(objectMapper,
+                sink -> userLoginRepository.forEach(userLogin -> sink.accept(UserLoginDto.map(userLogin))));
     }
 
     @GetMapping("/users/{userId}/logins")
@@ -62,26 +99,50 @@ public class UserLoginController {
     }
 
     @PostMapping("/logins")
-    public UserLoginDto createLogin(@RequestBody @Valid CreateLoginRequest loginRequest) {
+    public CompletableFuture<UserLoginDto> createLogin(@RequestBody @Valid CreateLoginRequest loginRequest,
+                                                       HttpServletRequest request) {
         var username = loginRequest.getUsername();
         var password = loginRequest.getPassword();
+        var clientIp = request.getRemoteAddr();
+
+        loginThrottle.acquire(username, clientIp);
 
         var user = userRepository.findByUsername(username);
 
-        if (!user.isPresent() || !validCredentials(user.get(), username, password)) {
+        if (!user.isPresent() || !user.get().getUsername().equals(username)) {
+            loginThrottle.recordFailure(username, clientIp);
             throw new BadCredentialsException("Bad credentials were provided");
         }
 
+        // Off the hashing threads for the inserts
+        return unwrapped(passwordHasher.matches(password, user.get().getPassword())
+                .thenApplyAsync(valid -> {
+                    if (!valid) {
+                        loginThrottle.recordFailure(username, clientIp);
+                        throw new BadCredentialsException("Bad credentials were provided");
+                    }
+                    loginThrottle.recordSuccess(username, clientIp);
+                    return login(user.get());
+                }, requestExecutor));
+    }
+
+    private UserLoginDto login(User user) {
         var authToken = UUID.randomUUID().toString();
         var userLogin = userLoginRepository.insert(
                 UserLogin.builder()
-                        .userId(user.get().getId())
+                        .userId(user.getId())
                         .authToken(authToken)
                         .createdOn(clock.instant())
                         .expiresOn(clock.instant().plusSeconds(autTokenLifetime))
                         .build());
+        userActivityRecorder.recordLogin(user.getId(), userLogin.getCreatedOn());
 
-        log.info("User {} logged in", user.get());
+        log.info("User {} logged in", user);
+
+        if (signedAuthTokens.isEnabled()) {
+            // The row keeps the opaque token; clients are handed a signed one that needs no lookup
+            return UserLoginDto.map(userLogin.withAuthToken(signedAuthTokens.issue(userLogin, user.getRoles())));
+        }
 
         return UserLoginDto.map(userLogin);
     }
@@ -96,6 +157,7 @@ public class UserLoginController {
         }
 
         userLoginRepository.delete(userLogin.get());
+        authTokenRevocations.revokeLogin(loginId);
     }
 
 
@@ -103,6 +165,7 @@ public class UserLoginController {
     @AuthorizedAsAdminOrOwner
     public void deleteAllLoginsForUser(@PathVariable long userId) {
         int tokensDeleted = userLoginRepository.deleteAllForUserId(userId);
+        authTokenRevocations.revokeUser(userId);
         log.info("Logging out user (id={}), deleted {} tokens", userId, tokensDeleted);
     }
 
@@ -117,11 +180,6 @@ public class UserLoginController {
         }
 
         userLoginRepository.delete(userLogin.get());
-    }
-
-    private boolean validCredentials(User user, String username, String password) {
-        return user != null
-                && user.getUsername().equals(username)
-                && passwordEncoder.matches(password, user.getPassword());
+        authTokenRevocations.revokeLogin(loginId);
     }
 }
@@ -0,0 +1,67 @@
+package io.github.synepis.todo.login;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+
+/**
+ * Periodically deletes expired logins in small batches, so that user_login and its token index do not grow
+ * with every login ever made.
+ */
+@Slf4j
+@Component
+public class UserLoginReaper {
+
+    private final Clock clock;
+
+    private final UserLoginRepository userLoginRepository;
+
+    private final int batchSize;
+
+    private final int maxBatchesPerRun;
+
+    private final Counter reclaimed;
+
+    private final Timer duration;
+
+    public UserLoginReaper(Clock clock,
+                           UserLoginRepository userLoginRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${security.token.reaper.batch-size}") int batchSize,
+                           @Value("${security.token.reaper.max-batches-per-run}") int maxBatchesPerRun) {
+        this.clock = clock;
+        this.userLoginRepository = userLoginRepository;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.reclaimed = meterRegistry.counter("user_login.reaper.reclaimed");
+        this.duration = meterRegistry.timer("user_login.reaper.duration");
+    }
+
+    @Scheduled(fixedDelayString = "${security.token.reaper.interval}")
+    public void reap() {
+        duration.record(() -> {
+            var now = clock.instant();
+            var total = 0;
+
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                var deleted = userLoginRepository.deleteExpiredBatch(now, batchSize);
+                total += deleted;
+                reclaimed.increment(deleted);
+
+                if (deleted < batchSize) {
+                    break;
+                }
+            }
+
+            if (total > 0) {
+                log.info("Reaped {} expired logins", total);
+            }
+        });
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.synepis.todo.login;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sliding expiry for logins in active use.
+ *
+ * A login is renewed to a full lifetime at most once per renewal window, and never past the maximum session
+ * lifetime counted from when it was created. Renewals are buffered per login and written periodically in
+ * batches, so a busy token costs at most one write per window and a quiet one costs none.
+ */
+@Slf4j
+@Component
+public class UserLoginRenewals {
+
+    private final UserLoginRepository userLoginRepository;
+
+    private final long lifetimeMillis;
+
+    private final long renewalWindowMillis;
+
+    private final long maxSessionLifetimeMillis;
+
+    private final int maxPending;
+
+    private final int batchSize;
+
+    /* loginId -> renewed expiry */
+    private final ConcurrentHashMap<Long, Instant> pending = new ConcurrentHashMap<>();
+
+    private final Counter renewed;
+
+    private final Counter dropped;
+
+    public UserLoginRenewals(UserLoginRepository userLoginRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${security.token.auth-token-lifetime}") long lifetime,
+                             @Value("${security.token.renewal.window}") long renewalWindow,
+                             @Value("${security.token.renewal.max-session-lifetime}") long maxSessionLifetime,
+                             @Value("${security.token.renewal.max-pending}") int maxPending,
+                             @Value("${security.token.renewal.batch-size}") int batchSize) {
+        this.userLoginRepository = userLoginRepository;
+        this.lifetimeMillis = lifetime * 1000;
+        this.renewalWindowMillis = renewalWindow * 1000;
+        this.maxSessionLifetimeMillis = maxSessionLifetime * 1000;
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+        this.renewed = meterRegistry.counter("user_login.renewals", "result", "renewed");
+        this.dropped = meterRegistry.counter("user_login.renewals", "result", "dropped");
+        meterRegistry.gauge("user_login.renewals.pending", pending, ConcurrentHashMap::size);
+    }
+
+    /**
+     * Returns the login's new expiry if it is due for renewal, the renewal is then written on the next flush.
+     */
+    public Optional<Instant> renewIfDue(LoginPrincipal principal, Instant now) {
+        var nowMillis = now.toEpochMilli();
+        var expiresOnMillis = principal.getExpiresOn().toEpochMilli();
+
+        // Renewed, or created, within the last window
+        if (expiresOnMillis - nowMillis > lifetimeMillis - renewalWindowMillis) {
+            return Optional.empty();
+        }
+
+        var renewedMillis = Math.min(
+                nowMillis + lifetimeMillis,
+                principal.getCreatedOn().toEpochMilli() + maxSessionLifetimeMillis);
+        if (renewedMillis <= expiresOnMillis) {
+            return Optional.empty();
+        }
+
+        if (pending.size() >= maxPending && !pending.containsKey(principal.getLoginId())) {
+            dropped.increment();
+            return Optional.empty();
+        }
+
+        var expiresOn = Instant.ofEpochMilli(renewedMillis);
+        pending.merge(principal.getLoginId(), expiresOn, (a, b) -> a.isAfter(b) ? a : b);
+        renewed.increment();
+        return Optional.of(expiresOn);
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${security.token.renewal.flush-interval}")
+    public void flush() {
+        var batch = new HashMap<Long, Instant>();
+
+        for (var loginId : pending.keySet()) {
+            var expiresOn = pending.remove(loginId);
+            if (expiresOn != null) {
+                batch.put(loginId, expiresOn);
+            }
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch.clear();
+            }
+        }
+
+        write(batch);
+    }
+
+    private void write(HashMap<Long, Instant> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            userLoginRepository.extendExpiry(batch);
+        } catch (RuntimeException ex) {
+            log.warn("Failed to renew {} logins", batch.size(), ex);
+        }
+    }
+}
@@ -1,17 +1,24 @@
 package io.github.synepis.todo.login;
 
+import io.github.synepis.todo.user.UserRepository;
 import io.github.synepis.todo.utils.SqlUtils;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
 
 @Repository
 public class UserLoginRepository {
@@ -30,25 +37,35 @@ public class UserLoginRepository {
 
     public Long countByUserId(long userId) {
         return jdbcTemplate.query(
-                "select * from " + TABLE_NAME + " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID,
+                "select count(*) from " + TABLE_NAME + " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID,
                 Map.of(FIELD_USER_ID, userId),
                 SqlUtils::mapCountRow).stream().findFirst().get();
     }
 
     public List<UserLogin> findAll() {
-        return jdbcTemplate.query("select * from " + TABLE_NAME, Map.of(), this::mapRow);
+        return jdbcTemplate.query("select " + COLUMNS + " from " + TABLE_NAME, Map.of(), this::mapRow);
+    }
+
+    /**
+     * Hands every row to the action as it is read, in id order, without materializing the table.
+     */
+    @Transactional(readOnly = true)
+    public void forEach(Consumer<UserLogin> action) {
+        jdbcTemplate.getJdbcTemplate().query(
+                SqlUtils.streamingStatement("select " + COLUMNS + " from " + TABLE_NAME + " order by " + FIELD_ID),
+                (RowCallbackHandler) rs -> action.accept(mapRow(rs, 0)));
     }
 
     public Optional<UserLogin> findById(long id) {
         return jdbcTemplate.query(
-                "select * from " + TABLE_NAME + " where " + FIELD_ID + " = :" + FIELD_ID,
+                "select " + COLUMNS + " from " + TABLE_NAME + " where " + FIELD_ID + " = :" + FIELD_ID,
                 Map.of(FIELD_ID, id),
                 this::mapRow).stream().findFirst();
     }
 
     public Optional<UserLogin> findByIdAndUserId(long id, long userId) {
         return jdbcTemplate.query(
-                "select * from " + TABLE_NAME + " where " +
+                "select " + COLUMNS + " from " + TABLE_NAME + " where " +
                         FIELD_ID + " = :" + FIELD_ID + " and " +
                         FIELD_USER_ID + " = :" + FIELD_USER_ID,
                 Map.of(FIELD_ID, id, FIELD_USER_ID, userId),
@@ -57,34 +74,49 @@ public class UserLoginRepository {
 
     public List<UserLogin> findByAllByUserId(long userId) {
         return jdbcTemplate.query(
-                "select * from " + TABLE_NAME + " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID,
+                "select " + COLUMNS + " from " + TABLE_NAME + " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID,
                 Map.of(FIELD_USER_ID, userId),
                 this::mapRow);
     }
 
     public Optional<UserLogin> findByAuthToken(String authToken) {
         return jdbcTemplate.query(
-                "select * from " + TABLE_NAME + " where " + FIELD_AUTH_TOKEN + " = :" + FIELD_AUTH_TOKEN,
-                Map.of(FIELD_AUTH_TOKEN, authToken),
+                "select " + COLUMNS + " from " + TABLE_NAME + " where " + FIELD_AUTH_TOKEN_HASH + " = :" + FIELD_AUTH_TOKEN_HASH,
+                Map.of(FIELD_AUTH_TOKEN_HASH, AuthTokenDigest.sha256(authToken)),
                 this::mapRow).stream().findFirst();
     }
 
+    /**
+     * Resolves a non-expired token and its user's roles in a single round trip.
+     */
+    public Optional<LoginPrincipal> findPrincipalByAuthToken(String authToken, Instant now) {
+        return jdbcTemplate.query(
+                "select l." + FIELD_ID + ", l." + FIELD_USER_ID + ", l." + FIELD_CREATED_ON + ", l." + FIELD_EXPIRES_ON +
+                        ", u." + FIELD_USER_ROLES +
+                        " from " + TABLE_NAME + " l" +
+                        " join " + USER_TABLE_NAME + " u on u." + FIELD_ID + " = l." + FIELD_USER_ID +
+                        " where l." + FIELD_AUTH_TOKEN_HASH + " = :" + FIELD_AUTH_TOKEN_HASH +
+                        " and l." + FIELD_EXPIRES_ON + " > :now",
+                Map.of(FIELD_AUTH_TOKEN_HASH, AuthTokenDigest.sha256(authToken), "now", Timestamp.from(now)),
+                this::mapPrincipalRow).stream().findFirst();
+    }
+
     public UserLogin insert(UserLogin userLogin) {
         var keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(
                 "insert into " + TABLE_NAME + "(" +
                         FIELD_USER_ID + ", " +
-                        FIELD_AUTH_TOKEN + ", " +
+                        FIELD_AUTH_TOKEN_HASH + ", " +
                         FIELD_CREATED_ON + ", " +
                         FIELD_EXPIRES_ON + ") " +
                         " values (" +
                         ":" + FIELD_USER_ID + ", " +
-                        ":" + FIELD_AUTH_TOKEN + ", " +
+                        ":" + FIELD_AUTH_TOKEN_HASH + ", " +
                         ":" + FIELD_CREATED_ON + ", " +
                         ":" + FIELD_EXPIRES_ON + ")",
                 SqlUtils.parameterMap(
                         FIELD_USER_ID, userLogin.getUserId(),
-                        FIELD_AUTH_TOKEN, userLogin.getAuthToken(),
+                        FIELD_AUTH_TOKEN_HASH, AuthTokenDigest.sha256(userLogin.getAuthToken()),
                         FIELD_CREATED_ON, Timestamp.from(userLogin.getCreatedOn()),
                         FIELD_EXPIRES_ON, Timestamp.from(userLogin.getExpiresOn())),
                 keyHolder);
@@ -95,23 +127,49 @@ public class UserLoginRepository {
         var updateCount = jdbcTemplate.update(
                 "update " + TABLE_NAME + " set " +
                         FIELD_USER_ID + " = :" + FIELD_USER_ID + ", " +
-                        FIELD_AUTH_TOKEN + " = :" + FIELD_AUTH_TOKEN + ", " +
                         FIELD_CREATED_ON + " = :" + FIELD_CREATED_ON + ", " +
                         FIELD_EXPIRES_ON + " = :" + FIELD_EXPIRES_ON +
                         " where " +
-                        FIELD_AUTH_TOKEN + " = :" + FIELD_AUTH_TOKEN,
+                        FIELD_ID + " = :" + FIELD_ID,
                 SqlUtils.parameterMap(
+                        FIELD_ID, userLogin.getId(),
                         FIELD_USER_ID, userLogin.getUserId(),
-                        FIELD_AUTH_TOKEN, userLogin.getAuthToken(),
                         FIELD_CREATED_ON, Timestamp.from(userLogin.getCreatedOn()),
                         FIELD_EXPIRES_ON, Timestamp.from(userLogin.getExpiresOn())));
         return updateCount == 1;
     }
 
+    /**
+     * Pushes out the expiry of several logins in a single statement. Expiry only ever moves forward, so
+     * renewals of the same login from several nodes are harmless.
+     */
+    public int extendExpiry(Map<Long, Instant> expiresOnByLoginId) {
+        if (expiresOnByLoginId.isEmpty()) {
+            return 0;
+        }
+
+        var values = new StringJoiner(",");
+        var params = new MapSqlParameterSource();
+        var i = 0;
+        for (var renewal : expiresOnByLoginId.entrySet()) {
+            values.add("(cast(:id" + i + " as bigint), cast(:expires_on" + i + " as timestamp))");
+            params.addValue(FIELD_ID + i, renewal.getKey());
+            params.addValue(FIELD_EXPIRES_ON + i, Timestamp.from(renewal.getValue()));
+            i++;
+        }
+
+        return jdbcTemplate.update(
+                "update " + TABLE_NAME + " l set " +
+                        FIELD_EXPIRES_ON + " = greatest(l." + FIELD_EXPIRES_ON + ", v." + FIELD_EXPIRES_ON + ")" +
+                        " from (values " + values + ") as v(" + FIELD_ID + "," + FIELD_EXPIRES_ON + ")" +
+                        " where l." + FIELD_ID + " = v." + FIELD_ID,
+                params);
+    }
+
     public boolean delete(UserLogin userLogin) {
         var updateCount = jdbcTemplate.update(
-                "delete from " + TABLE_NAME + " where " + FIELD_AUTH_TOKEN + " = :" + FIELD_AUTH_TOKEN,
-                Map.of(FIELD_AUTH_TOKEN, userLogin.getAuthToken()));
+                "delete from " + TABLE_NAME + " where " + FIELD_ID + " = :" + FIELD_ID,
+                Map.of(FIELD_ID, userLogin.getId()));
         return updateCount == 1;
     }
 
@@ -119,11 +177,23 @@ public class UserLoginRepository {
         var updateCount = jdbcTemplate.update(
                 "delete from " + TABLE_NAME + " where "
                         + FIELD_USER_ID + " = :" + FIELD_USER_ID + " and "
-                        + FIELD_AUTH_TOKEN + " = :" + FIELD_AUTH_TOKEN,
-                Map.of(FIELD_USER_ID, userId, FIELD_AUTH_TOKEN, authToken));
+                        + FIELD_AUTH_TOKEN_HASH + " = :" + FIELD_AUTH_TOKEN_HASH,
+                Map.of(FIELD_USER_ID, userId, FIELD_AUTH_TOKEN_HASH, AuthTokenDigest.sha256(authToken)));
         return updateCount;
     }
 
+    /**
+     * Deletes at most {@code batchSize} logins that expired before {@code now}, keeping each delete short.
+     */
+    public int deleteExpiredBatch(Instant now, int batchSize) {
+        return jdbcTemplate.update(
+                "delete from " + TABLE_NAME + " where " + FIELD_ID + " in (" +
+                        "select " + FIELD_ID + " from " + TABLE_NAME +
+                        " where " + FIELD_EXPIRES_ON + " < :now" +
+                        " limit :batch_size)",
+                Map.of("now", Timestamp.from(now), "batch_size", batchSize));
+    }
+
     public int deleteAllForUserId(long userId) {
         var updateCount = jdbcTemplate.update(
                 "delete from " + TABLE_NAME + " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID,
@@ -136,17 +206,34 @@ public class UserLoginRepository {
 
     private final String FIELD_ID = "id";
     private final String FIELD_USER_ID = "user_id";
-    private final String FIELD_AUTH_TOKEN = "auth_token";
+    private final String FIELD_AUTH_TOKEN_HASH = "auth_token_hash";
     private final String FIELD_CREATED_ON = "created_on";
     private final String FIELD_EXPIRES_ON = "expires_on";
 
+    private final String USER_TABLE_NAME = "public.\"user\"";
+    private final String FIELD_USER_ROLES = "roles";
+
+    // The token hash is only ever matched on, never read back
+    private final String COLUMNS = FIELD_ID + ", " + FIELD_USER_ID + ", " + FIELD_CREATED_ON + ", " + FIELD_EXPIRES_ON;
+
+    // By position in COLUMNS
     private UserLogin mapRow(ResultSet rs, int rowNum) throws SQLException {
         return UserLogin.builder()
-                .id(rs.getLong(FIELD_ID))
-                .userId(rs.getLong(FIELD_USER_ID))
-                .authToken(rs.getString(FIELD_AUTH_TOKEN))
-                .createdOn(rs.getTimestamp(FIELD_CREATED_ON).toInstant())
-                .expiresOn(rs.getTimestamp(FIELD_EXPIRES_ON).toInstant())
+                .id(rs.getLong(1))
+                .userId(rs.getLong(2))
+                .createdOn(rs.getTimestamp(3).toInstant())
+                .expiresOn(rs.getTimestamp(4).toInstant())
+                .build();
+    }
+
+    // COLUMNS of the login followed by the user's roles
+    private LoginPrincipal mapPrincipalRow(ResultSet rs, int rowNum) throws SQLException {
+        return LoginPrincipal.builder()
+                .loginId(rs.getLong(1))
+                .userId(rs.getLong(2))
+                .createdOn(rs.getTimestamp(3).toInstant())
+                .expiresOn(rs.getTimestamp(4).toInstant())
+                .roles(UserRepository.parseRoles(rs.getString(5)))
                 .build();
     }
 
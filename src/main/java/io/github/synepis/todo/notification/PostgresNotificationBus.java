@@ -0,0 +1,153 @@
+package io.github.synepis.todo.notification;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Cluster-wide messaging over Postgres LISTEN/NOTIFY.
+ *
+ * A single dedicated connection is held for listening; every node connected to the same
+ * database receives every notification, including the ones it sent itself. Notifications sent while that
+ * connection is lost are not delivered once it is back, so subscribers also resync every time it (re)subscribes.
+ */
+@Slf4j
+@Component
+public class PostgresNotificationBus implements SmartLifecycle {
+
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+
+    private static final long RECONNECT_DELAY_MILLIS = 5_000;
+
+    private final DataSource dataSource;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final Map<String, List<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+
+    private final List<Runnable> resyncs = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+
+    private Thread listenerThread;
+
+    public PostgresNotificationBus(DataSource dataSource, NamedParameterJdbcTemplate jdbcTemplate) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Delivers every notification on {@code channel} to {@code subscriber}, and runs {@code resync} whenever the
+     * listener has (re)subscribed, to make up for anything sent while it was not listening.
+     */
+    public void subscribe(String channel, Consumer<String> subscriber, Runnable resync) {
+        subscribers.computeIfAbsent(channel, c -> new CopyOnWriteArrayList<>()).add(subscriber);
+        resyncs.add(resync);
+    }
+
+    public void publish(String channel, String payload) {
+        try {
+            jdbcTemplate.query(
+                    "select pg_notify(:channel, :payload)",
+                    Map.of("channel", channel, "payload", payload),
+                    rs -> { });
+        } catch (RuntimeException ex) {
+            log.error("Failed to publish notification {} on channel {}", payload, channel, ex);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        listenerThread = new Thread(this::listen, "pg-notification-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            listenerThread = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (var connection = dataSource.getConnection()) {
+                var listening = ConcurrentHashMap.<String>newKeySet();
+                var pgConnection = connection.unwrap(PGConnection.class);
+                listenToNewChannels(connection, listening);
+                resync();
+                while (running) {
+                    listenToNewChannels(connection, listening);
+                    var notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (var notification : notifications) {
+                        dispatch(notification.getName(), notification.getParameter());
+                    }
+                }
+            } catch (SQLException ex) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Lost notification listener connection, reconnecting in {}ms", RECONNECT_DELAY_MILLIS, ex);
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void listenToNewChannels(Connection connection, Set<String> listening) throws SQLException {
+        for (var channel : subscribers.keySet()) {
+            if (listening.add(channel)) {
+                try (var statement = connection.createStatement()) {
+                    statement.execute("listen \"" + channel + "\"");
+                }
+            }
+        }
+    }
+
+    private void resync() {
+        for (var resync : resyncs) {
+            try {
+                resync.run();
+            } catch (RuntimeException ex) {
+                log.error("Subscriber failed to resync", ex);
+            }
+        }
+    }
+
+    private void dispatch(String channel, String payload) {
+        for (var subscriber : subscribers.getOrDefault(channel, List.of())) {
+            try {
+                subscriber.accept(payload);
+            } catch (RuntimeException ex) {
+                log.error("Subscriber failed to handle notification {} on channel {}", payload, channel, ex);
+            }
+        }
+    }
+}
@@ -1,35 +1,49 @@
 package io.github.synepis.todo.security;
 
-import io.github.synepis.todo.login.UserLogin;
+import io.github.synepis.todo.login.LoginPrincipal;
+import io.github.synepis.todo.login.UserLoginRenewals;
 import io.github.synepis.todo.login.UserLoginRepository;
-import io.github.synepis.todo.user.UserRepository;
-import io.github.synepis.todo.user.UserRole;
+import io.github.synepis.todo.user.UserActivityRecorder;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import java.time.Clock;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.time.Instant;
 
 @Component
 public class AuthProvider implements AuthenticationProvider {
 
     private final Clock clock;
 
-    private final UserRepository userRepository;
-
     private final UserLoginRepository userLoginRepository;
 
-    public AuthProvider(Clock clock, UserRepository userRepository, UserLoginRepository userLoginRepository) {
+    private final AuthTokenCache authTokenCache;
+
+    private final SignedAuthTokens signedAuthTokens;
+
+    private final AuthTokenRevocations authTokenRevocations;
+
+    private final UserActivityRecorder userActivityRecorder;
+
+    private final UserLoginRenewals userLoginRenewals;
+
+    public AuthProvider(Clock clock,
+                        UserLoginRepository userLoginRepository,
+                        AuthTokenCache authTokenCache,
+                        SignedAuthTokens signedAuthTokens,
+                        AuthTokenRevocations authTokenRevocations,
+                        UserActivityRecorder userActivityRecorder,
+                        UserLoginRenewals userLoginRenewals) {
         this.clock = clock;
-        this.userRepository = userRepository;
         this.userLoginRepository = userLoginRepository;
+        this.authTokenCache = authTokenCache;
+        this.signedAuthTokens = signedAuthTokens;
+        this.authTokenRevocations = authTokenRevocations;
+        this.userActivityRecorder = userActivityRecorder;
+        this.userLoginRenewals = userLoginRenewals;
     }
 
     @Override
@@ -37,40 +51,68 @@ public class AuthProvider implements AuthenticationProvider {
         var login = (AuthTokenContainer) authentication;
         var authToken = login.getToken();
 
-        var userLogin = userLoginRepository.findByAuthToken(authToken);
+        var now = clock.instant();
 
-        if (!userLogin.isPresent()) {
-            throw new BadCredentialsException("Invalid auth token");
+        var authenticated = signedAuthTokens.isSignedToken(authToken)
+                ? authenticateSigned(authToken, now)
+                : authenticateOpaque(authToken, now);
+
+        userActivityRecorder.recordSeen(authenticated.getUserId(), now);
+
+        return authenticated;
+    }
+
+    private AuthTokenContainer authenticateOpaque(String authToken, Instant now) {
+        var cached = authTokenCache.get(authToken, now);
+
+        if (cached.isPresent()) {
+            renewIfDue(authToken, cached.get().getPrincipal(), now);
+            return cached.get().getAuthentication();
         }
 
-        if (!validUserLogin(userLogin.get())) {
-            throw new BadCredentialsException("Expired auth token");
+        var generation = authTokenCache.generation();
+        var principal = userLoginRepository.findPrincipalByAuthToken(authToken, now);
+
+        if (!principal.isPresent()) {
+            throw new BadCredentialsException("Invalid or expired auth token");
         }
 
-        var user = userRepository.findById(userLogin.get().getUserId());
+        var authenticated = new AuthTokenContainer(
+                authToken,
+                principal.get().getUserId(),
+                principal.get().getRoles());
 
-        if (!user.isPresent()) {
-            throw new BadCredentialsException("Unknown user for auth token");
+        authTokenCache.put(authenticated, principal.get(), now, generation);
+        renewIfDue(authToken, principal.get(), now);
+
+        return authenticated;
+    }
+
+    /* Signed tokens carry their expiry and cannot slide, only opaque ones are renewed */
+    private void renewIfDue(String authToken, LoginPrincipal principal, Instant now) {
+        userLoginRenewals.renewIfDue(principal, now)
+                .ifPresent(expiresOn -> authTokenCache.extend(authToken, expiresOn, now));
+    }
+
+    private AuthTokenContainer authenticateSigned(String authToken, Instant now) {
+        var principal = signedAuthTokens.verify(authToken);
+
+        if (!principal.isPresent()) {
+            throw new BadCredentialsException("Invalid auth token");
+        }
+
+        if (!principal.get().getExpiresOn().isAfter(now) || authTokenRevocations.isRevoked(principal.get())) {
+            throw new BadCredentialsException("Expired auth token");
         }
 
         return new AuthTokenContainer(
                 authToken,
-                user.get().getId(),
-                parseAuthorities(user.get().getRoles()));
+                principal.get().getUserId(),
+                principal.get().getRoles());
     }
 
     @Override
     public boolean supports(Class<?> authentication) {
         return AuthTokenContainer.class.isAssignableFrom(authentication);
     }
-
-    private boolean validUserLogin(UserLogin userLogin) {
-        return userLogin.getExpiresOn().isAfter(clock.instant());
-    }
-
-    private List<GrantedAuthority> parseAuthorities(Set<UserRole> roles) {
-        return roles != null
-                ? roles.stream().map(r -> new SimpleGrantedAuthority(r.name())).collect(Collectors.toList())
-                : List.of();
-    }
 }
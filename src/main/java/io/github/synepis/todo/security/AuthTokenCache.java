@@ -0,0 +1,184 @@
+package io.github.synepis.todo.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.github.synepis.todo.login.LoginPrincipal;
+import io.github.synepis.todo.notification.PostgresNotificationBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of authenticated tokens, so that repeat requests with the same token skip the database.
+ *
+ * Entries expire together with the login they were resolved from. Revocations are applied locally
+ * and broadcast to every other node through {@link PostgresNotificationBus}. Whenever those broadcasts may
+ * have been missed, the whole cache is dropped.
+ */
+@Slf4j
+@Component
+public class AuthTokenCache {
+
+    static final String INVALIDATION_CHANNEL = "auth_token_invalidation";
+
+    private static final String LOGIN_PREFIX = "login:";
+
+    private static final String USER_PREFIX = "user:";
+
+    private final Cache<String, Entry> cache;
+
+    private final PostgresNotificationBus notificationBus;
+
+    private final Counter invalidations;
+
+    /* Bumped on every invalidation, lets a racing cache fill detect that it may be stale */
+    private final AtomicLong generation = new AtomicLong();
+
+    public AuthTokenCache(PostgresNotificationBus notificationBus,
+                          MeterRegistry meterRegistry,
+                          @Value("${security.token.cache.maximum-size}") long maximumSize) {
+        this.notificationBus = notificationBus;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new EntryExpiry())
+                .recordStats()
+                .build();
+        this.invalidations = meterRegistry.counter("cache.invalidations", "cache", "auth-token");
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "auth-token");
+        notificationBus.subscribe(INVALIDATION_CHANNEL, this::onInvalidation, this::evictAll);
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public Optional<Entry> get(String authToken, Instant now) {
+        if (authToken == null) {
+            return Optional.empty();
+        }
+
+        var entry = cache.getIfPresent(authToken);
+        if (entry == null) {
+            return Optional.empty();
+        }
+
+        if (!entry.principal.getExpiresOn().isAfter(now)) {
+            cache.invalidate(authToken);
+            return Optional.empty();
+        }
+
+        return Optional.of(entry);
+    }
+
+    /**
+     * Caches an authentication resolved from the database, unless an invalidation happened since
+     * {@code resolvedAtGeneration} was read, in which case the resolved value may already be revoked.
+     */
+    public void put(AuthTokenContainer authentication, LoginPrincipal principal, Instant now, long resolvedAtGeneration) {
+        var timeToLive = Duration.between(now, principal.getExpiresOn());
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            return;
+        }
+
+        cache.put(authentication.getToken(), new Entry(authentication, principal, timeToLive.toNanos()));
+
+        if (generation.get() != resolvedAtGeneration) {
+            cache.invalidate(authentication.getToken());
+        }
+    }
+
+    /**
+     * Moves the expiry of a cached token forward after its login was renewed.
+     */
+    public void extend(String authToken, Instant expiresOn, Instant now) {
+        var timeToLive = Duration.between(now, expiresOn);
+        cache.asMap().computeIfPresent(authToken, (token, entry) ->
+                new Entry(entry.authentication, entry.principal.withExpiresOn(expiresOn), timeToLive.toNanos()));
+    }
+
+    public void invalidateLogin(long loginId) {
+        evictLogin(loginId);
+        notificationBus.publish(INVALIDATION_CHANNEL, LOGIN_PREFIX + loginId);
+    }
+
+    public void invalidateUser(long userId) {
+        evictUser(userId);
+        notificationBus.publish(INVALIDATION_CHANNEL, USER_PREFIX + userId);
+    }
+
+    private void onInvalidation(String payload) {
+        if (payload.startsWith(LOGIN_PREFIX)) {
+            evictLogin(Long.parseLong(payload.substring(LOGIN_PREFIX.length())));
+        } else if (payload.startsWith(USER_PREFIX)) {
+            evictUser(Long.parseLong(payload.substring(USER_PREFIX.length())));
+        } else {
+            log.warn("Ignoring unknown auth token invalidation: {}", payload);
+        }
+    }
+
+    private void evictLogin(long loginId) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        cache.asMap().values().removeIf(entry -> entry.principal.getLoginId() == loginId);
+    }
+
+    private void evictUser(long userId) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        cache.asMap().values().removeIf(entry -> entry.principal.getUserId() == userId);
+    }
+
+    private void evictAll() {
+        generation.incrementAndGet();
+        invalidations.increment();
+        cache.invalidateAll();
+    }
+
+    public static class Entry {
+        private final AuthTokenContainer authentication;
+        private final LoginPrincipal principal;
+        private final long timeToLiveNanos;
+
+        private Entry(AuthTokenContainer authentication, LoginPrincipal principal, long timeToLiveNanos) {
+            this.authentication = authentication;
+            this.principal = principal;
+            this.timeToLiveNanos = timeToLiveNanos;
+        }
+
+        public AuthTokenContainer getAuthentication() {
+            return authentication;
+        }
+
+        public LoginPrincipal getPrincipal() {
+            return principal;
+        }
+    }
+
+    private static class EntryExpiry implements Expiry<String, Entry> {
+
+        @Override
+        public long expireAfterCreate(String key, Entry value, long currentTime) {
+            return value.timeToLiveNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Entry value, long currentTime, long currentDuration) {
+            return value.timeToLiveNanos;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Entry value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
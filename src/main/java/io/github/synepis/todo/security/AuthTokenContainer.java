@@ -3,28 +3,44 @@ package io.github.synepis.todo.security;
 import io.github.synepis.todo.user.UserRole;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
+/**
+ * Roles are kept as a bitmask of {@link UserRole} ordinals, so role checks and {@link #getAuthorities()}
+ * never allocate. The authority lists for every role combination are built once up front.
+ */
 public class AuthTokenContainer extends AbstractAuthenticationToken {
 
+    private static final UserRole[] ROLES = UserRole.values();
+
+    private static final List<List<GrantedAuthority>> AUTHORITIES_BY_ROLE_MASK = authoritiesByRoleMask();
+
     private final String token;
 
     private final Long userId;
 
+    private final int roleMask;
+
     public AuthTokenContainer(String token) {
         super(null);
 
         this.token = token;
         this.userId = null;
+        this.roleMask = 0;
         setAuthenticated(false);
     }
 
-    public AuthTokenContainer(String token, long userId, List<GrantedAuthority> grantedAuthorities) {
-        super(grantedAuthorities);
+    public AuthTokenContainer(String token, long userId, Set<UserRole> roles) {
+        super(null);
         this.token = token;
         this.userId = userId;
+        this.roleMask = roleMask(roles);
         setAuthenticated(true);
     }
 
@@ -38,6 +54,11 @@ public class AuthTokenContainer extends AbstractAuthenticationToken {
         return  getUserId().toString();
     }
 
+    @Override
+    public Collection<GrantedAuthority> getAuthorities() {
+        return AUTHORITIES_BY_ROLE_MASK.get(roleMask);
+    }
+
     public String getToken() {
         return token;
     }
@@ -47,14 +68,34 @@ public class AuthTokenContainer extends AbstractAuthenticationToken {
     }
 
     public boolean hasRole(UserRole userRole) {
-        if (this.getAuthorities() == null) {
-            return false;
+        return (roleMask & bit(userRole)) != 0;
+    }
+
+    private static int roleMask(Set<UserRole> roles) {
+        var mask = 0;
+        if (roles != null) {
+            for (var role : roles) {
+                mask |= bit(role);
+            }
         }
+        return mask;
+    }
 
-        var roles = this.getAuthorities().stream()
-                .map(GrantedAuthority::getAuthority)
-                .collect(Collectors.toSet());
+    private static int bit(UserRole role) {
+        return 1 << role.ordinal();
+    }
 
-        return roles.contains(userRole.name());
+    private static List<List<GrantedAuthority>> authoritiesByRoleMask() {
+        var byMask = new ArrayList<List<GrantedAuthority>>(1 << ROLES.length);
+        for (var mask = 0; mask < 1 << ROLES.length; mask++) {
+            var authorities = new ArrayList<GrantedAuthority>();
+            for (var role : ROLES) {
+                if ((mask & bit(role)) != 0) {
+                    authorities.add(new SimpleGrantedAuthority(role.name()));
+                }
+            }
+            byMask.add(Collections.unmodifiableList(authorities));
+        }
+        return byMask;
     }
 }
@@ -9,7 +9,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Collections;
 
 public class AuthTokenFilter extends OncePerRequestFilter {
     private static final String TOKEN_HEADER = "x-auth-token";
@@ -26,11 +25,8 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /* Header name lookups are case-insensitive and return the first value if the header is repeated */
     private String getTokenHeader(HttpServletRequest req) {
-        return Collections.list(req.getHeaderNames()).stream()
-                .filter(header -> header.equalsIgnoreCase(TOKEN_HEADER))
-                .map(req::getHeader)
-                .findFirst()
-                .orElse(null);
+        return req.getHeader(TOKEN_HEADER);
     }
 }
\ No newline at end of file
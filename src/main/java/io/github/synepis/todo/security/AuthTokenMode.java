@@ -0,0 +1,8 @@
+package io.github.synepis.todo.security;
+
+public enum AuthTokenMode {
+    /* Random token, resolved against user_login on every request (or the auth token cache) */
+    OPAQUE,
+    /* HMAC signed token carrying the principal, verified without a database read */
+    SIGNED,
+}
@@ -0,0 +1,133 @@
+package io.github.synepis.todo.security;
+
+import io.github.synepis.todo.login.AuthTokenRevocation;
+import io.github.synepis.todo.login.AuthTokenRevocationRepository;
+import io.github.synepis.todo.login.LoginPrincipal;
+import io.github.synepis.todo.notification.PostgresNotificationBus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single entry point for logging out logins and users.
+ *
+ * Opaque tokens are evicted from the {@link AuthTokenCache}. Signed tokens cannot be deleted, so their
+ * revocations are recorded in the database and mirrored by every node in a small in-memory set, which is
+ * refreshed incrementally on a schedule and whenever another node broadcasts a revocation. Revocations only
+ * need to be kept for as long as the tokens they revoke could still be valid.
+ */
+@Slf4j
+@Component
+public class AuthTokenRevocations {
+
+    /* Revocations may commit slightly out of order, re-read a short window on every refresh */
+    private static final Duration REFRESH_OVERLAP = Duration.ofSeconds(10);
+
+    private final Clock clock;
+
+    private final AuthTokenCache authTokenCache;
+
+    private final SignedAuthTokens signedAuthTokens;
+
+    private final AuthTokenRevocationRepository revocationRepository;
+
+    private final Duration tokenLifetime;
+
+    /* loginId -> revokedOn */
+    private final Map<Long, Instant> revokedLogins = new ConcurrentHashMap<>();
+
+    /* userId -> logins created up to this instant are revoked */
+    private final Map<Long, Instant> revokedUsers = new ConcurrentHashMap<>();
+
+    private Instant refreshedOn;
+
+    private Instant prunedOn = Instant.EPOCH;
+
+    public AuthTokenRevocations(Clock clock,
+                                AuthTokenCache authTokenCache,
+                                SignedAuthTokens signedAuthTokens,
+                                AuthTokenRevocationRepository revocationRepository,
+                                PostgresNotificationBus notificationBus,
+                                @Value("${security.token.auth-token-lifetime}") long tokenLifetime) {
+        this.clock = clock;
+        this.authTokenCache = authTokenCache;
+        this.signedAuthTokens = signedAuthTokens;
+        this.revocationRepository = revocationRepository;
+        this.tokenLifetime = Duration.ofSeconds(tokenLifetime);
+
+        notificationBus.subscribe(AuthTokenCache.INVALIDATION_CHANNEL, payload -> refresh(), this::refresh);
+    }
+
+    public void revokeLogin(long loginId) {
+        if (signedAuthTokens.isEnabled()) {
+            var revocation = revocationRepository.insert(
+                    AuthTokenRevocation.builder().loginId(loginId).revokedOn(clock.instant()).build());
+            apply(revocation);
+        }
+        authTokenCache.invalidateLogin(loginId);
+    }
+
+    public void revokeUser(long userId) {
+        if (signedAuthTokens.isEnabled()) {
+            var revocation = revocationRepository.insert(
+                    AuthTokenRevocation.builder().userId(userId).revokedOn(clock.instant()).build());
+            apply(revocation);
+        }
+        authTokenCache.invalidateUser(userId);
+    }
+
+    public boolean isRevoked(LoginPrincipal principal) {
+        if (revokedLogins.containsKey(principal.getLoginId())) {
+            return true;
+        }
+        var revokedOn = revokedUsers.get(principal.getUserId());
+        return revokedOn != null && !principal.getCreatedOn().isAfter(revokedOn);
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${security.token.revocation-refresh-interval}")
+    public synchronized void refresh() {
+        if (!signedAuthTokens.isEnabled()) {
+            return;
+        }
+
+        var now = clock.instant();
+        var oldestRelevant = now.minus(tokenLifetime);
+        var since = refreshedOn != null ? refreshedOn.minus(REFRESH_OVERLAP) : oldestRelevant;
+
+        revocationRepository.findRevokedSince(since).forEach(this::apply);
+        refreshedOn = now;
+
+        revokedLogins.values().removeIf(revokedOn -> revokedOn.isBefore(oldestRelevant));
+        revokedUsers.values().removeIf(revokedOn -> revokedOn.isBefore(oldestRelevant));
+
+        if (prunedOn.isBefore(oldestRelevant)) {
+            var pruned = revocationRepository.deleteRevokedBefore(oldestRelevant);
+            prunedOn = now;
+            log.debug("Pruned {} auth token revocations", pruned);
+        }
+    }
+
+    private void apply(AuthTokenRevocation revocation) {
+        if (revocation.getLoginId() != null) {
+            revokedLogins.put(revocation.getLoginId(), revocation.getRevokedOn());
+        }
+        if (revocation.getUserId() != null) {
+            revokedUsers.merge(revocation.getUserId(), revocation.getRevokedOn(),
+                    (a, b) -> a.isAfter(b) ? a : b);
+        }
+    }
+}
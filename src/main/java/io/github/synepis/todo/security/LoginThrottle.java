@@ -0,0 +1,193 @@
+package io.github.synepis.todo.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.synepis.todo.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Rejects login attempts before the user lookup and BCrypt verification run, so that guessing passwords
+ * costs an attacker more than it costs us.
+ *
+ * Every attempt takes a token from a bucket for the username and one for the client IP. Consecutive failed
+ * attempts for a username from one address additionally lock that address out of the username for an
+ * exponentially growing period, reset by a successful login. Keying the lockout by address as well means
+ * failures from elsewhere cannot lock the owner out. Buckets and lockouts live in caches bounded by size,
+ * whose eviction Caffeine chooses by frequency as well as recency (W-TinyLFU), so memory stays flat however
+ * many usernames and addresses are tried. Every rejection is one user lookup and one BCrypt verification
+ * avoided.
+ */
+@Component
+public class LoginThrottle {
+
+    private final Clock clock;
+
+    private final Cache<String, Bucket> usernameBuckets;
+
+    private final Cache<String, Bucket> ipBuckets;
+
+    private final Cache<String, Backoff> backoffs;
+
+    private final BucketSettings usernameSettings;
+
+    private final BucketSettings ipSettings;
+
+    private final int freeFailures;
+
+    private final long backoffBaseMillis;
+
+    private final long backoffMaxMillis;
+
+    private final Counter usernameRejected;
+
+    private final Counter ipRejected;
+
+    private final Counter backoffRejected;
+
+    public LoginThrottle(Clock clock,
+                         MeterRegistry meterRegistry,
+                         @Value("${security.login-throttle.maximum-keys}") long maximumKeys,
+                         @Value("${security.login-throttle.username.capacity}") int usernameCapacity,
+                         @Value("${security.login-throttle.username.refill-per-minute}") int usernameRefillPerMinute,
+                         @Value("${security.login-throttle.ip.capacity}") int ipCapacity,
+                         @Value("${security.login-throttle.ip.refill-per-minute}") int ipRefillPerMinute,
+                         @Value("${security.login-throttle.backoff.free-failures}") int freeFailures,
+                         @Value("${security.login-throttle.backoff.base}") long backoffBaseMillis,
+                         @Value("${security.login-throttle.backoff.max}") long backoffMaxMillis) {
+        this.clock = clock;
+        this.usernameSettings = new BucketSettings(usernameCapacity, usernameRefillPerMinute);
+        this.ipSettings = new BucketSettings(ipCapacity, ipRefillPerMinute);
+        this.freeFailures = freeFailures;
+        this.backoffBaseMillis = backoffBaseMillis;
+        this.backoffMaxMillis = backoffMaxMillis;
+
+        // An idle bucket is full again, and any lockout over, once this long has passed
+        var idle = Duration.ofMillis(Math.max(backoffMaxMillis,
+                Math.max(usernameSettings.millisToFill(), ipSettings.millisToFill())));
+        this.usernameBuckets = newCache(maximumKeys, idle);
+        this.ipBuckets = newCache(maximumKeys, idle);
+        this.backoffs = newCache(maximumKeys, idle);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, usernameBuckets, "login-throttle-username");
+        CaffeineCacheMetrics.monitor(meterRegistry, ipBuckets, "login-throttle-ip");
+        CaffeineCacheMetrics.monitor(meterRegistry, backoffs, "login-throttle-backoff");
+        this.usernameRejected = meterRegistry.counter("login.throttle.rejected", "limit", "username");
+        this.ipRejected = meterRegistry.counter("login.throttle.rejected", "limit", "ip");
+        this.backoffRejected = meterRegistry.counter("login.throttle.rejected", "limit", "backoff");
+    }
+
+    /**
+     * Takes a token for the username and the client IP, or throws if either is exhausted or the username
+     * is locked out for the client IP after repeated failures.
+     */
+    public void acquire(String username, String clientIp) {
+        var now = clock.millis();
+        var usernameBucket = usernameBuckets.get(username, key -> new Bucket(usernameSettings, now));
+        var ipBucket = ipBuckets.get(clientIp, key -> new Bucket(ipSettings, now));
+
+        var backoff = backoffs.getIfPresent(backoffKey(username, clientIp));
+        var lockedOutFor = backoff == null ? 0 : backoff.lockedOutFor(now);
+        if (lockedOutFor > 0) {
+            backoffRejected.increment();
+            throw new TooManyRequestsException("Too many failed logins", Duration.ofMillis(lockedOutFor));
+        }
+
+        var ipWait = ipBucket.tryTake(now);
+        if (ipWait > 0) {
+            ipRejected.increment();
+            throw new TooManyRequestsException("Too many logins from this address", Duration.ofMillis(ipWait));
+        }
+
+        var usernameWait = usernameBucket.tryTake(now);
+        if (usernameWait > 0) {
+            usernameRejected.increment();
+            throw new TooManyRequestsException("Too many logins for this user", Duration.ofMillis(usernameWait));
+        }
+    }
+
+    public void recordFailure(String username, String clientIp) {
+        backoffs.get(backoffKey(username, clientIp), key -> new Backoff())
+                .recordFailure(clock.millis(), freeFailures, backoffBaseMillis, backoffMaxMillis);
+    }
+
+    public void recordSuccess(String username, String clientIp) {
+        backoffs.invalidate(backoffKey(username, clientIp));
+    }
+
+    /* The address goes first: it never contains the separator, so no two pairs share a key */
+    private static String backoffKey(String username, String clientIp) {
+        return clientIp + " " + username;
+    }
+
+    private static <V> Cache<String, V> newCache(long maximumKeys, Duration idle) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(idle)
+                .recordStats()
+                .build();
+    }
+
+    private static class BucketSettings {
+        private final int capacity;
+        private final double tokensPerMilli;
+
+        private BucketSettings(int capacity, int refillPerMinute) {
+            this.capacity = capacity;
+            this.tokensPerMilli = refillPerMinute / 60_000.0;
+        }
+
+        private long millisToFill() {
+            return (long) Math.ceil(capacity / tokensPerMilli);
+        }
+    }
+
+    private static class Bucket {
+        private final BucketSettings settings;
+        private double tokens;
+        private long refilledOn;
+
+        private Bucket(BucketSettings settings, long now) {
+            this.settings = settings;
+            this.tokens = settings.capacity;
+            this.refilledOn = now;
+        }
+
+        /* Returns 0 if a token was taken, otherwise how many millis until one is available */
+        private synchronized long tryTake(long now) {
+            if (now > refilledOn) {
+                tokens = Math.min(settings.capacity, tokens + (now - refilledOn) * settings.tokensPerMilli);
+                refilledOn = now;
+            }
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / settings.tokensPerMilli);
+        }
+    }
+
+    private static class Backoff {
+        private int consecutiveFailures;
+        private long lockedOutUntil;
+
+        private synchronized long lockedOutFor(long now) {
+            return Math.max(0, lockedOutUntil - now);
+        }
+
+        private synchronized void recordFailure(long now, int freeFailures, long baseMillis, long maxMillis) {
+            consecutiveFailures++;
+            var penalised = consecutiveFailures - freeFailures;
+            if (penalised > 0) {
+                var backoff = penalised > 30 ? maxMillis : Math.min(maxMillis, baseMillis << (penalised - 1));
+                lockedOutUntil = now + backoff;
+            }
+        }
+    }
+}
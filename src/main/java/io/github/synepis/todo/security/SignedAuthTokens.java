@@ -0,0 +1,128 @@
+package io.github.synepis.todo.security;
+
+import io.github.synepis.todo.login.LoginPrincipal;
+import io.github.synepis.todo.login.UserLogin;
+import io.github.synepis.todo.user.UserRole;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Issues and verifies HMAC-SHA256 signed auth tokens of the form {@code base64(payload).base64(signature)},
+ * where the payload is {@code loginId:userId:createdOnMillis:expiresOnMillis:roles}.
+ */
+@Component
+public class SignedAuthTokens {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final int MIN_KEY_LENGTH = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final AuthTokenMode mode;
+
+    private final ThreadLocal<Mac> mac;
+
+    public SignedAuthTokens(@Value("${security.token.mode}") AuthTokenMode mode,
+                            @Value("${security.token.signing-key}") String signingKey) {
+        this.mode = mode;
+
+        if (mode == AuthTokenMode.SIGNED) {
+            var key = Base64.getDecoder().decode(signingKey);
+            if (key.length < MIN_KEY_LENGTH) {
+                throw new IllegalStateException(
+                        "security.token.signing-key must be at least " + MIN_KEY_LENGTH + " bytes, base64 encoded");
+            }
+            var keySpec = new SecretKeySpec(key, ALGORITHM);
+            this.mac = ThreadLocal.withInitial(() -> newMac(keySpec));
+        } else {
+            this.mac = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return mode == AuthTokenMode.SIGNED;
+    }
+
+    /**
+     * Opaque tokens are UUIDs and never contain the payload/signature separator.
+     */
+    public boolean isSignedToken(String authToken) {
+        return isEnabled() && authToken != null && authToken.indexOf('.') > 0;
+    }
+
+    public String issue(UserLogin userLogin, Set<UserRole> roles) {
+        var payload = userLogin.getId() + ":" +
+                userLogin.getUserId() + ":" +
+                userLogin.getCreatedOn().toEpochMilli() + ":" +
+                userLogin.getExpiresOn().toEpochMilli() + ":" +
+                roles.stream().map(Enum::name).collect(Collectors.joining(","));
+        var payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payloadBytes) + "." + ENCODER.encodeToString(sign(payloadBytes));
+    }
+
+    /**
+     * Returns the principal carried by the token if its signature is valid. Expiry and revocation are
+     * left to the caller.
+     */
+    public Optional<LoginPrincipal> verify(String authToken) {
+        try {
+            var separator = authToken.indexOf('.');
+            var payloadBytes = DECODER.decode(authToken.substring(0, separator));
+            var signature = DECODER.decode(authToken.substring(separator + 1));
+
+            if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+                return Optional.empty();
+            }
+
+            var fields = new String(payloadBytes, StandardCharsets.UTF_8).split(":", -1);
+            return Optional.of(LoginPrincipal.builder()
+                    .loginId(Long.parseLong(fields[0]))
+                    .userId(Long.parseLong(fields[1]))
+                    .createdOn(Instant.ofEpochMilli(Long.parseLong(fields[2])))
+                    .expiresOn(Instant.ofEpochMilli(Long.parseLong(fields[3])))
+                    .roles(parseRoles(fields[4]))
+                    .build());
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        return mac.get().doFinal(payload);
+    }
+
+    private static Set<UserRole> parseRoles(String roles) {
+        var parsed = EnumSet.noneOf(UserRole.class);
+        if (!roles.isEmpty()) {
+            for (var role : roles.split(",")) {
+                parsed.add(UserRole.valueOf(role));
+            }
+        }
+        return parsed;
+    }
+
+    private static Mac newMac(SecretKeySpec keySpec) {
+        try {
+            var mac = Mac.getInstance(ALGORITHM);
+            mac.init(keySpec);
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Unable to initialize " + ALGORITHM, ex);
+        }
+    }
+}
@@ -34,6 +34,9 @@ public class Todo {
     @NonNull
     private TodoStatus status;
 
+    /* Assigned by the database, changes with every update */
+    private Long version;
+
     @Override
     public String toString() {
         return new ToStringBuilder(this)
@@ -44,6 +47,7 @@ public class Todo {
                 .append("createdOn", createdOn)
                 .append("priority", priority)
                 .append("status", status)
+                .append("version", version)
                 .build();
     }
 }
@@ -0,0 +1,198 @@
+package io.github.synepis.todo.todo;
+
+import io.github.synepis.todo.exception.BadRequestException;
+import io.github.synepis.todo.todo.dto.TodoBatchOperation;
+import io.github.synepis.todo.todo.dto.TodoBatchOperationType;
+import io.github.synepis.todo.todo.dto.TodoBatchResult;
+import io.github.synepis.todo.todo.dto.TodoBatchResult.Outcome;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.github.synepis.todo.validation.Constants.TODO_TITLE_MAX_LENGTH;
+
+/**
+ * Applies a batch of todo operations for one user in a single transaction.
+ *
+ * Consecutive operations of the same type go to the database together, as one multi-row insert or one JDBC
+ * batch, so the order between operations is kept without a round trip per operation. Operations that are
+ * invalid or refer to someone else's todo are reported in their result and do not fail the batch.
+ */
+@Component
+public class TodoBatchService {
+
+    private final Clock clock;
+
+    private final TodoRepository todoRepository;
+
+    private final int maxOperations;
+
+    public TodoBatchService(Clock clock,
+                            TodoRepository todoRepository,
+                            @Value("${todo.batch.max-operations}") int maxOperations) {
+        this.clock = clock;
+        this.todoRepository = todoRepository;
+        this.maxOperations = maxOperations;
+    }
+
+    @Transactional
+    public List<TodoBatchResult> apply(long userId, List<TodoBatchOperation> operations) {
+        if (operations.size() > maxOperations) {
+            throw new BadRequestException("A batch can have at most " + maxOperations + " operations");
+        }
+
+        var results = new TodoBatchResult[operations.size()];
+        var start = 0;
+        while (start < operations.size()) {
+            var type = operations.get(start).getType();
+            var end = start;
+            while (end < operations.size() && operations.get(end).getType() == type) {
+                end++;
+            }
+            apply(userId, type, operations, start, end, results);
+            start = end;
+        }
+        return Arrays.asList(results);
+    }
+
+    private void apply(long userId, TodoBatchOperationType type, List<TodoBatchOperation> operations,
+                       int start, int end, TodoBatchResult[] results) {
+        var valid = new ArrayList<Integer>();
+        for (var i = start; i < end; i++) {
+            var error = validate(operations.get(i));
+            if (error == null) {
+                valid.add(i);
+            } else {
+                results[i] = TodoBatchResult.builder().outcome(Outcome.INVALID).message(error).build();
+            }
+        }
+
+        switch (type) {
+            case CREATE:
+                create(userId, operations, valid, results);
+                break;
+            case UPDATE:
+                update(userId, operations, valid, results);
+                break;
+            case DELETE:
+                delete(userId, operations, valid, results);
+                break;
+            case SET_STATUS:
+                setStatus(userId, operations, valid, results);
+                break;
+        }
+    }
+
+    private void create(long userId, List<TodoBatchOperation> operations, List<Integer> valid,
+                        TodoBatchResult[] results) {
+        var now = clock.instant();
+        var todos = valid.stream()
+                .map(operations::get)
+                .map(operation -> Todo.builder()
+                        .userId(userId)
+                        .title(operation.getTitle())
+                        .description(operation.getDescription())
+                        .priority(operation.getTodoPriority())
+                        .status(operation.getTodoStatus())
+                        .createdOn(now)
+                        .build())
+                .collect(Collectors.toList());
+
+        var inserted = todoRepository.insertAll(todos);
+        for (var i = 0; i < valid.size(); i++) {
+            results[valid.get(i)] = TodoBatchResult.builder()
+                    .outcome(Outcome.CREATED)
+                    .id(inserted.get(i).getId())
+                    .build();
+        }
+    }
+
+    private void update(long userId, List<TodoBatchOperation> operations, List<Integer> valid,
+                        TodoBatchResult[] results) {
+        var patches = valid.stream()
+                .map(operations::get)
+                .map(operation -> TodoPatch.builder()
+                        .id(operation.getId())
+                        .title(operation.getTitle())
+                        .description(operation.getDescription())
+                        .priority(operation.getTodoPriority())
+                        .status(operation.getTodoStatus())
+                        .build())
+                .collect(Collectors.toList());
+
+        var counts = todoRepository.patchAll(userId, patches);
+        for (var i = 0; i < valid.size(); i++) {
+            results[valid.get(i)] = byIdResult(operations.get(valid.get(i)), counts[i], Outcome.UPDATED);
+        }
+    }
+
+    private void delete(long userId, List<TodoBatchOperation> operations, List<Integer> valid,
+                        TodoBatchResult[] results) {
+        var ids = valid.stream()
+                .map(i -> operations.get(i).getId())
+                .collect(Collectors.toList());
+
+        var counts = todoRepository.deleteAll(userId, ids);
+        for (var i = 0; i < valid.size(); i++) {
+            results[valid.get(i)] = byIdResult(operations.get(valid.get(i)), counts[i], Outcome.DELETED);
+        }
+    }
+
+    private void setStatus(long userId, List<TodoBatchOperation> operations, List<Integer> valid,
+                           TodoBatchResult[] results) {
+        for (var i : valid) {
+            var operation = operations.get(i);
+            var count = todoRepository.updateStatus(userId, operation.getFromStatuses(), operation.getTodoStatus());
+            results[i] = TodoBatchResult.builder().outcome(Outcome.UPDATED).count(count).build();
+        }
+    }
+
+    private static TodoBatchResult byIdResult(TodoBatchOperation operation, int count, Outcome outcome) {
+        return TodoBatchResult.builder()
+                .outcome(count == 1 ? outcome : Outcome.NOT_FOUND)
+                .id(operation.getId())
+                .build();
+    }
+
+    private static String validate(TodoBatchOperation operation) {
+        switch (operation.getType()) {
+            case CREATE:
+                if (operation.getTitle() == null || operation.getTitle().isBlank()) {
+                    return "title: must not be blank";
+                }
+                if (operation.getTitle().length() > TODO_TITLE_MAX_LENGTH) {
+                    return "title: must be at most " + TODO_TITLE_MAX_LENGTH + " characters";
+                }
+                if (operation.getTodoPriority() == null) {
+                    return "todoPriority: must not be null";
+                }
+                if (operation.getTodoStatus() == null) {
+                    return "todoStatus: must not be null";
+                }
+                return null;
+            case UPDATE:
+                if (operation.getId() == null) {
+                    return "id: must not be null";
+                }
+                if (operation.getTitle() != null && operation.getTitle().isBlank()) {
+                    return "title: must not be blank";
+                }
+                if (operation.getTitle() != null && operation.getTitle().length() > TODO_TITLE_MAX_LENGTH) {
+                    return "title: must be at most " + TODO_TITLE_MAX_LENGTH + " characters";
+                }
+                return null;
+            case DELETE:
+                return operation.getId() == null ? "id: must not be null" : null;
+            case SET_STATUS:
+                return operation.getTodoStatus() == null ? "todoStatus: must not be null" : null;
+            default:
+                return "type: unknown operation";
+        }
+    }
+}
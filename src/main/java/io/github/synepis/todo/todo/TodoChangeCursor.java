@@ -0,0 +1,38 @@
+package io.github.synepis.todo.todo;
+
+import io.github.synepis.todo.exception.BadRequestException;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Highest version a client has synced, and when it was handed out. Tombstones are only kept for a while,
+ * so an old cursor can no longer tell about every deletion.
+ */
+@Value
+public class TodoChangeCursor {
+
+    private long version;
+
+    private Instant issuedOn;
+
+    public String encode() {
+        var value = version + ":" + issuedOn.getEpochSecond();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TodoChangeCursor decode(String cursor) {
+        try {
+            var parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 2) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return new TodoChangeCursor(Long.parseLong(parts[0]), Instant.ofEpochSecond(Long.parseLong(parts[1])));
+        } catch (IllegalArgumentException | DateTimeException ex) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
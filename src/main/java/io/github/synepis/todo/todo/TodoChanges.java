@@ -0,0 +1,21 @@
+package io.github.synepis.todo.todo;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * A user's todos created or updated, and tombstones of those deleted, since a cursor. More are to be read
+ * with the new cursor when {@code more} is set.
+ */
+@Value
+public class TodoChanges {
+
+    private List<Todo> todos;
+
+    private List<TodoDeletion> deletions;
+
+    private TodoChangeCursor cursor;
+
+    private boolean more;
+}
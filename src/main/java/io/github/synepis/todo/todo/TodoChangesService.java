@@ -0,0 +1,72 @@
+package io.github.synepis.todo.todo;
+
+import io.github.synepis.todo.exception.GoneException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Delta sync: what changed in a user's todos since the version in a cursor.
+ *
+ * Todos and tombstones share one version sequence, and a user's writes take their versions in commit order
+ * (see V10__todo_deletion.sql), so everything up to the highest version returned has been seen. Both are read
+ * in one snapshot and merged in version order.
+ */
+@Component
+public class TodoChangesService {
+
+    private final Clock clock;
+
+    private final TodoRepository todoRepository;
+
+    private final TodoDeletionRepository todoDeletionRepository;
+
+    private final Duration retention;
+
+    public TodoChangesService(Clock clock,
+                              TodoRepository todoRepository,
+                              TodoDeletionRepository todoDeletionRepository,
+                              @Value("${todo.deletion.retention}") long retention) {
+        this.clock = clock;
+        this.todoRepository = todoRepository;
+        this.todoDeletionRepository = todoDeletionRepository;
+        this.retention = Duration.ofSeconds(retention);
+    }
+
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public TodoChanges changesSince(long userId, TodoChangeCursor since, int limit) {
+        var now = clock.instant();
+        if (since != null && since.getIssuedOn().isBefore(now.minus(retention))) {
+            throw new GoneException("cursor has expired, sync again without since");
+        }
+
+        var sinceVersion = since == null ? 0 : since.getVersion();
+        var todos = todoRepository.findByUserIdSince(userId, sinceVersion, limit + 1);
+        // A first sync has no todos to delete
+        var deletions = since == null
+                ? List.<TodoDeletion>of()
+                : todoDeletionRepository.findByUserIdSince(userId, sinceVersion, limit + 1);
+
+        int t = 0;
+        int d = 0;
+        var version = sinceVersion;
+        while (t + d < limit && (t < todos.size() || d < deletions.size())) {
+            if (d == deletions.size() || (t < todos.size() && todos.get(t).getVersion() < deletions.get(d).getVersion())) {
+                version = todos.get(t++).getVersion();
+            } else {
+                version = deletions.get(d++).getVersion();
+            }
+        }
+
+        return new TodoChanges(
+                todos.subList(0, t),
+                deletions.subList(0, d),
+                new TodoChangeCursor(version, now),
+                t < todos.size() || d < deletions.size());
+    }
+}
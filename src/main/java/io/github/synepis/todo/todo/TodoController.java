@@ -1,64 +1,207 @@
 package io.github.synepis.todo.todo;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.synepis.todo.exception.BadRequestException;
+import io.github.synepis.todo.exception.PreconditionFailedException;
 import io.github.synepis.todo.exception.ResourceNotFoundException;
 import io.github.synepis.todo.security.annotations.AuthorizedAsAdmin;
 import io.github.synepis.todo.security.annotations.AuthorizedAsAdminOrOwner;
 import io.github.synepis.todo.todo.dto.CreateTodoRequest;
+import io.github.synepis.todo.todo.dto.TodoBatchRequest;
+import io.github.synepis.todo.todo.dto.TodoBatchResult;
+import io.github.synepis.todo.todo.dto.TodoChangesDto;
 import io.github.synepis.todo.todo.dto.TodoDto;
+import io.github.synepis.todo.todo.dto.TodoStatisticsDto;
 import io.github.synepis.todo.todo.dto.UpdateTodoRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.time.Clock;
+import java.time.Instant;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-import static io.github.synepis.todo.utils.NullUtils.firstNonNull;
+import static io.github.synepis.todo.utils.JsonUtils.streamJsonArray;
 
 @Slf4j
 @RestController
 public class TodoController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final Clock clock;
 
     private final TodoRepository todoRepository;
 
-    public TodoController(Clock clock, TodoRepository todoRepository) {
+    private final TodoCountRepository todoCountRepository;
+
+    private final TodoBatchService todoBatchService;
+
+    private final TodoListCache todoListCache;
+
+    private final TodoChangesService todoChangesService;
+
+    private final ObjectMapper objectMapper;
+
+    private final int maxPageLimit;
+
+    public TodoController(Clock clock,
+                          TodoRepository todoRepository,
+                          TodoCountRepository todoCountRepository,
+                          TodoBatchService todoBatchService,
+                          TodoListCache todoListCache,
+                          TodoChangesService todoChangesService,
+                          ObjectMapper objectMapper,
+                          @Value("${todo.page.max-limit}") int maxPageLimit) {
         this.clock = clock;
         this.todoRepository = todoRepository;
+        this.todoCountRepository = todoCountRepository;
+        this.todoBatchService = todoBatchService;
+        this.todoListCache = todoListCache;
+        this.todoChangesService = todoChangesService;
+        this.objectMapper = objectMapper;
+        this.maxPageLimit = maxPageLimit;
     }
 
     @GetMapping("/todos")
     @AuthorizedAsAdmin
-    public List<TodoDto> getAllTodos() {
-        return todoRepository.findAll().stream()
-                .map(TodoDto::map)
-                .collect(Collectors.toList());
+    public ResponseEntity<List<TodoDto>> getAllTodos(
+            @RequestParam(defaultValue = "${todo.page.default-limit}") int limit,
+            @RequestParam(required = false) String cursor) {
+        return toResponse(ResponseEntity.ok(), todoRepository.findPage(decodeCursor(cursor), pageLimit(limit)));
+    }
+
+    @GetMapping("/todos/export")
+    @AuthorizedAsAdmin
+    public ResponseEntity<StreamingResponseBody> exportAllTodos() {
+        return streamJsonArray(objectMapper,
+                sink -> todoRepository.forEach(todo -> sink.accept(TodoDto.map(todo))));
+    }
+
+    @GetMapping("/todos/statistics")
+    @AuthorizedAsAdmin
+    public TodoStatisticsDto getTodoStatistics() {
+        return TodoStatisticsDto.approximate(todoRepository.approximateCount());
     }
 
     @GetMapping("/todos/{todoId}")
     @AuthorizedAsAdmin
-    public TodoDto getTodo(@PathVariable long todoId) throws ResourceNotFoundException {
-        return todoRepository.findById(todoId)
-                .map(TodoDto::map)
+    public ResponseEntity<TodoDto> getTodo(@PathVariable long todoId) throws ResourceNotFoundException {
+        var todo = todoRepository.findById(todoId)
                 .orElseThrow(() -> new ResourceNotFoundException("todo not found"));
+        // A matching If-None-Match turns this into a 304
+        return ResponseEntity.ok().eTag(eTag(todo)).body(TodoDto.map(todo));
     }
 
     @GetMapping("/users/{userId}/todos")
     @AuthorizedAsAdminOrOwner
-    public List<TodoDto> getAllTodosForUser(@PathVariable long userId) {
-        return todoRepository.findByUserId(userId).stream()
-                .map(TodoDto::map)
-                .collect(Collectors.toList());
+    public ResponseEntity<byte[]> getAllTodosForUser(
+            @PathVariable long userId,
+            @RequestParam(required = false) Set<TodoStatus> status,
+            @RequestParam(required = false) Set<TodoPriority> priority,
+            @RequestParam(required = false) Instant createdFrom,
+            @RequestParam(required = false) Instant createdTo,
+            @RequestParam(defaultValue = "CREATED_ON") TodoSortKey sort,
+            @RequestParam(defaultValue = "ASC") TodoSortOrder order,
+            @RequestParam(defaultValue = "${todo.page.default-limit}") int limit,
+            @RequestParam(required = false) String cursor,
+            WebRequest webRequest) throws JsonProcessingException {
+        if (createdFrom != null && createdTo != null && createdFrom.isAfter(createdTo)) {
+            throw new BadRequestException("createdFrom must not be after createdTo");
+        }
+        var after = decodeCursor(cursor);
+        if (after != null && sort == TodoSortKey.PRIORITY && after.getPriority() == null) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        var filter = TodoFilter.builder()
+                .statuses(status)
+                .priorities(priority)
+                .createdFrom(createdFrom)
+                .createdTo(createdTo)
+                .sort(sort)
+                .order(order)
+                .build();
+        var key = new TodoListCache.Key(userId, filter, cursor, pageLimit(limit));
+
+        var entry = todoListCache.get(key).orElse(null);
+        if (entry == null) {
+            var generation = todoListCache.generation();
+
+            // Read before the page, so a concurrent write can only make the tag older than the body, never newer
+            var listVersion = todoRepository.findListVersionByUserId(userId);
+            var eTag = "\"" + listVersion + "\"";
+            if (webRequest.checkNotModified(eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+
+            var page = todoRepository.findPageByUserId(userId, filter, after, pageLimit(limit));
+            entry = new TodoListCache.Entry(
+                    objectMapper.writeValueAsBytes(toDtos(page)),
+                    eTag,
+                    page.getNext() == null ? null : page.getNext().encode());
+            todoListCache.put(key, entry, generation);
+        } else if (webRequest.checkNotModified(entry.getETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entry.getETag()).build();
+        }
+
+        var response = ResponseEntity.ok()
+                .eTag(entry.getETag())
+                .contentType(MediaType.APPLICATION_JSON_UTF8);
+        if (entry.getNext() != null) {
+            response.header(NEXT_CURSOR_HEADER, entry.getNext());
+        }
+        return response.body(entry.getBody());
+    }
+
+    @GetMapping("/users/{userId}/todos/search")
+    @AuthorizedAsAdminOrOwner
+    public ResponseEntity<List<TodoDto>> searchTodosForUser(
+            @PathVariable long userId,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "${todo.page.default-limit}") int limit,
+            @RequestParam(required = false) String cursor) {
+        if (q.isBlank()) {
+            throw new BadRequestException("q must not be blank");
+        }
+        var after = cursor == null ? null : TodoSearchCursor.decode(cursor);
+        return toResponse(ResponseEntity.ok(), todoRepository.search(userId, q, after, pageLimit(limit)));
+    }
+
+    @GetMapping("/users/{userId}/todos/changes")
+    @AuthorizedAsAdminOrOwner
+    public TodoChangesDto getTodoChangesForUser(
+            @PathVariable long userId,
+            @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "${todo.page.default-limit}") int limit) {
+        var cursor = since == null ? null : TodoChangeCursor.decode(since);
+        return TodoChangesDto.map(todoChangesService.changesSince(userId, cursor, pageLimit(limit)));
+    }
+
+    @GetMapping("/users/{userId}/todos/statistics")
+    @AuthorizedAsAdminOrOwner
+    public TodoStatisticsDto getTodoStatisticsForUser(@PathVariable long userId) {
+        return TodoStatisticsDto.map(todoCountRepository.findByUserId(userId));
     }
 
     @GetMapping("/users/{userId}/todos/{todoId}")
     @AuthorizedAsAdminOrOwner
-    public List<TodoDto> getTodoForUser(@PathVariable long todoId, @PathVariable long userId) {
-        return todoRepository.findByIdAndUserId(todoId, userId).stream()
+    public ResponseEntity<List<TodoDto>> getTodoForUser(@PathVariable long todoId, @PathVariable long userId) {
+        var todo = todoRepository.findByIdAndUserId(todoId, userId);
+        var response = ResponseEntity.ok();
+        todo.ifPresent(it -> response.eTag(eTag(it)));
+        return response.body(todo.stream()
                 .map(TodoDto::map)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     @PostMapping("/users/{userId}/todos")
@@ -74,44 +217,101 @@ public class TodoController {
                         .priority(createTodoRequest.getTodoPriority())
                         .createdOn(clock.instant())
                         .build());
+        todoListCache.invalidateUser(userId);
         log.info("Created todo: {}", todo);
         return TodoDto.map(todo);
     }
 
+    @PostMapping("/users/{userId}/todos:batch")
+    @AuthorizedAsAdminOrOwner
+    public List<TodoBatchResult> batchForUser(@PathVariable long userId,
+                                              @Valid @RequestBody TodoBatchRequest todoBatchRequest) {
+        var results = todoBatchService.apply(userId, todoBatchRequest.getOperations());
+        todoListCache.invalidateUser(userId);
+        log.info("Applied batch of {} operations for user: {}", results.size(), userId);
+        return results;
+    }
+
     @PutMapping("/users/{userId}/todos/{todoId}")
     @AuthorizedAsAdminOrOwner
-    public void updateTodoForUser(@PathVariable long userId,
-                                  @PathVariable long todoId,
-                                  @Valid @RequestBody UpdateTodoRequest updateTodoRequest) throws ResourceNotFoundException {
-        var todoOptional = todoRepository.findByIdAndUserId(todoId, userId);
-        if (!todoOptional.isPresent()) {
+    public ResponseEntity<Void> updateTodoForUser(
+            @PathVariable long userId,
+            @PathVariable long todoId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody UpdateTodoRequest updateTodoRequest) throws ResourceNotFoundException {
+        var expectedVersion = parseIfMatch(ifMatch);
+        var patch = TodoPatch.builder()
+                .id(todoId)
+                .title(updateTodoRequest.getTitle())
+                .description(updateTodoRequest.getDescription())
+                .status(updateTodoRequest.getTodoStatus())
+                .priority(updateTodoRequest.getTodoPriority())
+                .version(expectedVersion)
+                .build();
+
+        // Ownership and version are part of the update, only a failed conditional update needs another look
+        var todo = todoRepository.patch(userId, patch);
+        if (todo.isEmpty()) {
+            if (expectedVersion != null && todoRepository.findByIdAndUserId(todoId, userId).isPresent()) {
+                throw new PreconditionFailedException("todo was modified, it is no longer at version " + expectedVersion);
+            }
             throw new ResourceNotFoundException("todo not found");
         }
-
-        var todo = todoOptional.get();
-        var todoToUpdate =
-                Todo.builder()
-                        .id(todoId)
-                        .userId(userId)
-                        .title(firstNonNull(updateTodoRequest.getTitle(), todo.getTitle()))
-                        .description(firstNonNull(updateTodoRequest.getDescription(), todo.getDescription()))
-                        .status(firstNonNull(updateTodoRequest.getTodoStatus(), todo.getStatus()))
-                        .priority(firstNonNull(updateTodoRequest.getTodoPriority(), todo.getPriority()))
-                        .createdOn(todo.getCreatedOn())
-                        .build();
-
-        todoRepository.update(todoToUpdate);
+        todoListCache.invalidateUser(userId);
+        return ResponseEntity.ok().eTag(eTag(todo.get())).build();
     }
 
     @DeleteMapping("/users/{userId}/todos/{todoId}")
     @AuthorizedAsAdminOrOwner
     public void deleteTodoForUser(@PathVariable long userId, @PathVariable long todoId) throws ResourceNotFoundException {
-        var userLogin = todoRepository.findByIdAndUserId(todoId, userId);
-
-        if (!userLogin.isPresent()) {
+        if (!todoRepository.deleteByIdAndUserId(todoId, userId)) {
             throw new ResourceNotFoundException("todo not found");
         }
+        todoListCache.invalidateUser(userId);
+    }
+
+    private int pageLimit(int limit) {
+        if (limit < 1) {
+            throw new BadRequestException("limit must be positive");
+        }
+        return Math.min(limit, maxPageLimit);
+    }
+
+    private static TodoCursor decodeCursor(String cursor) {
+        return cursor == null ? null : TodoCursor.decode(cursor);
+    }
+
+    private static String eTag(Todo todo) {
+        return "\"" + todo.getVersion() + "\"";
+    }
+
+    // Null for no or a wildcard If-Match
+    private static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        var value = ifMatch.trim();
+        if (value.length() < 2 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            throw new PreconditionFailedException("If-Match must be a single strong ETag");
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException ex) {
+            throw new PreconditionFailedException("If-Match does not match any version");
+        }
+    }
+
+    // The next cursor goes in a header so the body stays a plain list
+    private static ResponseEntity<List<TodoDto>> toResponse(ResponseEntity.BodyBuilder response, TodoPage<?> page) {
+        if (page.getNext() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNext().encode());
+        }
+        return response.body(toDtos(page));
+    }
 
-        todoRepository.delete(userLogin.get());
+    private static List<TodoDto> toDtos(TodoPage<?> page) {
+        return page.getTodos().stream()
+                .map(TodoDto::map)
+                .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,16 @@
+package io.github.synepis.todo.todo;
+
+import lombok.Value;
+
+/**
+ * Number of a user's todos with one status and priority.
+ */
+@Value
+public class TodoCount {
+
+    private TodoStatus status;
+
+    private TodoPriority priority;
+
+    private long count;
+}
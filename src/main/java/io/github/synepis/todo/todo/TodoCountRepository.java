@@ -0,0 +1,45 @@
+package io.github.synepis.todo.todo;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The todo_count counters are maintained by triggers on todo, reading them costs at most one row per status
+ * and priority, however many todos there are.
+ */
+@Repository
+public class TodoCountRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public TodoCountRepository(NamedParameterJdbcTemplate jdbcTemplate) {this.jdbcTemplate = jdbcTemplate;}
+
+    @Transactional(readOnly = true)
+    public List<TodoCount> findByUserId(long userId) {
+        return jdbcTemplate.query(
+                "select " + FIELD_STATUS + ", " + FIELD_PRIORITY + ", " + FIELD_COUNT + " from " + TABLE_NAME +
+                        " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID +
+                        " and " + FIELD_COUNT + " > 0",
+                Map.of(FIELD_USER_ID, userId),
+                this::mapRow);
+    }
+
+    private final String TABLE_NAME = "todo_count";
+
+    private final String FIELD_USER_ID = "user_id";
+    private final String FIELD_STATUS = "status";
+    private final String FIELD_PRIORITY = "priority";
+    private final String FIELD_COUNT = "count";
+
+    private TodoCount mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new TodoCount(
+                TodoStatus.ofCode(rs.getShort(1)),
+                TodoPriority.ofCode(rs.getShort(2)),
+                rs.getLong(3));
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.synepis.todo.todo;
+
+import io.github.synepis.todo.exception.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position of the last todo on a page, in (created_on, id) order, or in (priority, created_on, id) order for
+ * cursors that carry the priority. Cursors issued for a page always do.
+ */
+@Value
+@AllArgsConstructor
+public class TodoCursor implements TodoPage.Cursor {
+
+    private Instant createdOn;
+
+    private long id;
+
+    private TodoPriority priority;
+
+    public TodoCursor(Instant createdOn, long id) {
+        this(createdOn, id, null);
+    }
+
+    public static TodoCursor after(Todo todo) {
+        return new TodoCursor(todo.getCreatedOn(), todo.getId(), todo.getPriority());
+    }
+
+    @Override
+    public String encode() {
+        var value = createdOn.getEpochSecond() + ":" + createdOn.getNano() + ":" + id +
+                (priority == null ? "" : ":" + priority.getCode());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TodoCursor decode(String cursor) {
+        try {
+            var parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3 && parts.length != 4) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return new TodoCursor(
+                    Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1])),
+                    Long.parseLong(parts[2]),
+                    parts.length == 4 ? TodoPriority.ofCode(Integer.parseInt(parts[3])) : null);
+        } catch (IllegalArgumentException | DateTimeException | ArithmeticException | IndexOutOfBoundsException ex) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.synepis.todo.todo;
+
+import lombok.Value;
+
+/**
+ * Tombstone of a deleted todo, versioned from the same sequence as todos.
+ */
+@Value
+public class TodoDeletion {
+
+    private long todoId;
+
+    private long version;
+}
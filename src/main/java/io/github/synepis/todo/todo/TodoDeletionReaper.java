@@ -0,0 +1,68 @@
+package io.github.synepis.todo.todo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Periodically deletes tombstones older than the change cursors that could still need them, in small batches.
+ */
+@Slf4j
+@Component
+public class TodoDeletionReaper {
+
+    /* Tombstones are dated by the database when their transaction started, cursors by us when handed out */
+    private static final Duration MARGIN = Duration.ofHours(1);
+
+    private final TodoDeletionRepository todoDeletionRepository;
+
+    private final Duration retention;
+
+    private final int batchSize;
+
+    private final int maxBatchesPerRun;
+
+    private final Counter reclaimed;
+
+    private final Timer duration;
+
+    public TodoDeletionReaper(TodoDeletionRepository todoDeletionRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${todo.deletion.retention}") long retention,
+                              @Value("${todo.deletion.reaper.batch-size}") int batchSize,
+                              @Value("${todo.deletion.reaper.max-batches-per-run}") int maxBatchesPerRun) {
+        this.todoDeletionRepository = todoDeletionRepository;
+        this.retention = Duration.ofSeconds(retention).plus(MARGIN);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.reclaimed = meterRegistry.counter("todo_deletion.reaper.reclaimed");
+        this.duration = meterRegistry.timer("todo_deletion.reaper.duration");
+    }
+
+    @Scheduled(fixedDelayString = "${todo.deletion.reaper.interval}")
+    public void reap() {
+        duration.record(() -> {
+            var total = 0;
+
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                var deleted = todoDeletionRepository.deleteOlderThanBatch(retention, batchSize);
+                total += deleted;
+                reclaimed.increment(deleted);
+
+                if (deleted < batchSize) {
+                    break;
+                }
+            }
+
+            if (total > 0) {
+                log.info("Reaped {} todo tombstones", total);
+            }
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.synepis.todo.todo;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The todo_deletion log is written by a trigger on todo, whichever statement deletes the todo.
+ */
+@Repository
+public class TodoDeletionRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public TodoDeletionRepository(NamedParameterJdbcTemplate jdbcTemplate) {this.jdbcTemplate = jdbcTemplate;}
+
+    /**
+     * A user's tombstones above the version, in version order, from the (user_id, version) index.
+     */
+    public List<TodoDeletion> findByUserIdSince(long userId, long sinceVersion, int limit) {
+        return jdbcTemplate.query(
+                "select " + FIELD_TODO_ID + ", " + FIELD_VERSION + " from " + TABLE_NAME +
+                        " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID +
+                        " and " + FIELD_VERSION + " > :since_version" +
+                        " order by " + FIELD_VERSION +
+                        " limit :limit",
+                Map.of(FIELD_USER_ID, userId, "since_version", sinceVersion, "limit", limit),
+                this::mapRow);
+    }
+
+    /**
+     * Tombstones are dated by the trigger with the database's local time, so their age is measured in SQL
+     * against the same clock rather than against a cutoff from ours.
+     */
+    public int deleteOlderThanBatch(Duration age, int batchSize) {
+        return jdbcTemplate.update(
+                "delete from " + TABLE_NAME + " where " + FIELD_TODO_ID + " in (" +
+                        "select " + FIELD_TODO_ID + " from " + TABLE_NAME +
+                        " where " + FIELD_DELETED_ON + " < localtimestamp - :age_seconds * interval '1 second'" +
+                        " limit :batch_size)",
+                Map.of("age_seconds", age.getSeconds(), "batch_size", batchSize));
+    }
+
+    private final String TABLE_NAME = "todo_deletion";
+
+    private final String FIELD_TODO_ID = "todo_id";
+    private final String FIELD_USER_ID = "user_id";
+    private final String FIELD_VERSION = "version";
+    private final String FIELD_DELETED_ON = "deleted_on";
+
+    private TodoDeletion mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new TodoDeletion(rs.getLong(1), rs.getLong(2));
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.synepis.todo.todo;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Restricts a user's todos, empty or null criteria match everything. The created on range is [from, to).
+ */
+@Value
+@Builder
+public class TodoFilter {
+
+    public static final TodoFilter NONE = TodoFilter.builder().build();
+
+    private Set<TodoStatus> statuses;
+
+    private Set<TodoPriority> priorities;
+
+    private Instant createdFrom;
+
+    private Instant createdTo;
+
+    @NonNull
+    @Builder.Default
+    private TodoSortKey sort = TodoSortKey.CREATED_ON;
+
+    @NonNull
+    @Builder.Default
+    private TodoSortOrder order = TodoSortOrder.ASC;
+}
@@ -0,0 +1,165 @@
+package io.github.synepis.todo.todo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.synepis.todo.datasource.ReadYourWrites;
+import io.github.synepis.todo.notification.PostgresNotificationBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serialized pages of users' todo lists, together with their ETag, so that repeat reads skip the database and
+ * the mapping to JSON.
+ *
+ * The cache is bounded by the size of the cached bodies. Writes invalidate all of a user's pages locally and,
+ * through {@link PostgresNotificationBus}, on every other node. Should a notification be missed while the
+ * listener reconnects, the whole cache is dropped once it is back. Entries also expire after a while.
+ *
+ * Evictions on behalf of another node first pin the user to the primary in {@link ReadYourWrites}, or a read
+ * in between could cache the page from a replica that has not caught up yet.
+ */
+@Slf4j
+@Component
+public class TodoListCache {
+
+    static final String INVALIDATION_CHANNEL = "todo_list_invalidation";
+
+    /* Rough per-entry cost of the key, entry and cache node on top of the body */
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final Cache<Key, Entry> cache;
+
+    private final PostgresNotificationBus notificationBus;
+
+    private final ReadYourWrites readYourWrites;
+
+    private final Counter invalidations;
+
+    /* Bumped on every invalidation, lets a racing cache fill detect that it may be stale */
+    private final AtomicLong generation = new AtomicLong();
+
+    public TodoListCache(PostgresNotificationBus notificationBus,
+                         ReadYourWrites readYourWrites,
+                         MeterRegistry meterRegistry,
+                         @Value("${todo.list-cache.maximum-weight}") long maximumWeight,
+                         @Value("${todo.list-cache.ttl}") long ttl) {
+        this.notificationBus = notificationBus;
+        this.readYourWrites = readYourWrites;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Key key, Entry entry) -> entry.weight())
+                .expireAfterWrite(Duration.ofSeconds(ttl))
+                .recordStats()
+                .build();
+        this.invalidations = meterRegistry.counter("cache.invalidations", "cache", "todo-list");
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "todo-list");
+        notificationBus.subscribe(INVALIDATION_CHANNEL, this::onInvalidation, this::resync);
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public Optional<Entry> get(Key key) {
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    /**
+     * Caches a page read from the database, unless an invalidation happened since {@code readAtGeneration} was
+     * read, in which case the page may already be stale.
+     */
+    public void put(Key key, Entry entry, long readAtGeneration) {
+        cache.put(key, entry);
+
+        if (generation.get() != readAtGeneration) {
+            cache.invalidate(key);
+        }
+    }
+
+    public void invalidateUser(long userId) {
+        evictUser(userId);
+        notificationBus.publish(INVALIDATION_CHANNEL, Long.toString(userId));
+    }
+
+    private void onInvalidation(String payload) {
+        try {
+            var userId = Long.parseLong(payload);
+            readYourWrites.recordWrite(userId);
+            evictUser(userId);
+        } catch (NumberFormatException ex) {
+            log.warn("Ignoring unknown todo list invalidation: {}", payload);
+        }
+    }
+
+    private void evictUser(long userId) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        cache.asMap().keySet().removeIf(key -> key.userId == userId);
+    }
+
+    private void resync() {
+        readYourWrites.recordWriteForAll();
+        generation.incrementAndGet();
+        invalidations.increment();
+        cache.invalidateAll();
+    }
+
+    /**
+     * A page of a user's list, as requested.
+     */
+    @EqualsAndHashCode
+    public static class Key {
+        private final long userId;
+        private final TodoFilter filter;
+        private final String cursor;
+        private final int limit;
+
+        public Key(long userId, TodoFilter filter, String cursor, int limit) {
+            this.userId = userId;
+            this.filter = filter;
+            this.cursor = cursor;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * The JSON body of a page, its ETag and the encoded cursor to the next page, if any.
+     */
+    public static class Entry {
+        private final byte[] body;
+        private final String eTag;
+        private final String next;
+
+        public Entry(byte[] body, String eTag, String next) {
+            this.body = body;
+            this.eTag = eTag;
+            this.next = next;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public String getNext() {
+            return next;
+        }
+
+        private int weight() {
+            return body.length + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.synepis.todo.todo;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * A page of todos, next is null on the last page.
+ */
+@Value
+public class TodoPage<C extends TodoPage.Cursor> {
+
+    private List<Todo> todos;
+
+    private C next;
+
+    /**
+     * Position of the last todo on a page, handed to clients as an opaque string.
+     */
+    public interface Cursor {
+        String encode();
+    }
+}
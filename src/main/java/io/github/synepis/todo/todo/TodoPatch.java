@@ -0,0 +1,27 @@
+package io.github.synepis.todo.todo;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Partial update of a todo, null fields are left as they are. With a version, the todo is only updated if it is
+ * still at that version.
+ */
+@Value
+@Builder
+public class TodoPatch {
+
+    @NonNull
+    private Long id;
+
+    private String title;
+
+    private String description;
+
+    private TodoPriority priority;
+
+    private TodoStatus status;
+
+    private Long version;
+}
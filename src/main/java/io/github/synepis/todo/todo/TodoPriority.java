@@ -1,7 +1,33 @@
 package io.github.synepis.todo.todo;
 
+/**
+ * Stored as its code, which follows the rank, so ordering by the column orders by priority. Codes are in the
+ * database: never change or reuse one.
+ */
 public enum TodoPriority {
-    LOW,
-    MEDIUM,
-    HIGH
+    LOW(0),
+    MEDIUM(1),
+    HIGH(2);
+
+    private static final TodoPriority[] BY_CODE = new TodoPriority[values().length];
+
+    static {
+        for (var priority : values()) {
+            BY_CODE[priority.code] = priority;
+        }
+    }
+
+    private final short code;
+
+    TodoPriority(int code) {
+        this.code = (short) code;
+    }
+
+    public short getCode() {
+        return code;
+    }
+
+    public static TodoPriority ofCode(int code) {
+        return BY_CODE[code];
+    }
 }
@@ -1,17 +1,29 @@
 package io.github.synepis.todo.todo;
 
 import io.github.synepis.todo.utils.SqlUtils;
+import lombok.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
 public class TodoRepository {
@@ -19,22 +31,36 @@ public class TodoRepository {
 
     public TodoRepository(NamedParameterJdbcTemplate jdbcTemplate) {this.jdbcTemplate = jdbcTemplate;}
 
+    /**
+     * Exact, but scans the whole table, see {@link #approximateCount()} for anything polled.
+     */
     public Long count() {
         return jdbcTemplate.query(
                 "select count(*) from " + TABLE_NAME, Map.of(), SqlUtils::mapCountRow)
                 .stream().findFirst().get();
     }
 
+    /**
+     * The planner's row estimate, as of the last vacuum or analyze of the table. One catalog row, not a scan.
+     */
+    @Transactional(readOnly = true)
+    public long approximateCount() {
+        return jdbcTemplate.queryForObject(
+                "select reltuples::bigint from pg_class where oid = cast(:table_name as regclass)",
+                Map.of("table_name", TABLE_NAME),
+                Long.class);
+    }
+
     public Optional<Todo> findById(Long id) {
         return jdbcTemplate.query(
-                "select * from " + TABLE_NAME + " where " + FIELD_ID + " = :" + FIELD_ID,
+                "select " + COLUMNS + " from " + TABLE_NAME + " where " + FIELD_ID + " = :" + FIELD_ID,
                 Map.of(FIELD_ID, id),
                 this::mapRow).stream().findFirst();
     }
 
     public Optional<Todo> findByIdAndUserId(long id, long userId) {
         return jdbcTemplate.query(
-                "select * from " + TABLE_NAME + " where " +
+                "select " + COLUMNS + " from " + TABLE_NAME + " where " +
                         FIELD_ID + " = :" + FIELD_ID + " and " +
                         FIELD_USER_ID + " = :" + FIELD_USER_ID,
                 Map.of(FIELD_ID, id, FIELD_USER_ID, userId),
@@ -42,16 +68,197 @@ public class TodoRepository {
     }
 
     public List<Todo> findAll() {
-        return jdbcTemplate.query("select * from " + TABLE_NAME, Map.of(), this::mapRow);
+        return jdbcTemplate.query("select " + COLUMNS + " from " + TABLE_NAME, Map.of(), this::mapRow);
+    }
+
+    /**
+     * Hands every row to the action as it is read, in id order, without materializing the table.
+     */
+    @Transactional(readOnly = true)
+    public void forEach(Consumer<Todo> action) {
+        jdbcTemplate.getJdbcTemplate().query(
+                SqlUtils.streamingStatement("select " + COLUMNS + " from " + TABLE_NAME + " order by " + FIELD_ID),
+                (RowCallbackHandler) rs -> action.accept(mapRow(rs, 0)));
+    }
+
+    /**
+     * Highest version among the user's todos and tombstones, which share one sequence, so it rises whenever any
+     * of the todos is created, updated or deleted. Two index lookups on (user_id, version), whatever the number
+     * of todos. Reaping a tombstone can lower it, but only back to a version from before the retention period.
+     */
+    @Transactional(readOnly = true)
+    public long findListVersionByUserId(long userId) {
+        return jdbcTemplate.queryForObject(
+                "select coalesce(greatest(" +
+                        "(select max(" + FIELD_VERSION + ") from " + TABLE_NAME +
+                        " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID + "), " +
+                        "(select max(version) from todo_deletion where user_id = :" + FIELD_USER_ID + ")), 0)",
+                Map.of(FIELD_USER_ID, userId),
+                Long.class);
+    }
+
+    /**
+     * A user's todos created or updated after the version, in version order, from the (user_id, version) index.
+     */
+    public List<Todo> findByUserIdSince(long userId, long sinceVersion, int limit) {
+        return jdbcTemplate.query(
+                "select " + COLUMNS + " from " + TABLE_NAME +
+                        " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID +
+                        " and " + FIELD_VERSION + " > :since_version" +
+                        " order by " + FIELD_VERSION +
+                        " limit :limit",
+                Map.of(FIELD_USER_ID, userId, "since_version", sinceVersion, "limit", limit),
+                this::mapRow);
     }
 
     public List<Todo> findByUserId(Long userId) {
         return jdbcTemplate.query(
-                "select * from " + TABLE_NAME + " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID ,
+                "select " + COLUMNS + " from " + TABLE_NAME + " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID ,
                 Map.of(FIELD_USER_ID, userId),
                 this::mapRow);
     }
 
+    /**
+     * Todos in (created_on, id) order, starting after the cursor if one is given. Each page is a range scan
+     * on the (created_on, id) index, so it costs the same however deep it is.
+     */
+    @Transactional(readOnly = true)
+    public TodoPage<TodoCursor> findPage(TodoCursor after, int limit) {
+        return findPage(pageQuery(null, TodoFilter.NONE, after, limit), limit);
+    }
+
+    /**
+     * As {@link #findPage}, restricted to one user and filtered. A status or priority filter is served by the
+     * (user_id, status|priority, created_on, id) indexes, anything else by (user_id, created_on, id). Ordered
+     * by priority, pages are ranges of (user_id, priority, created_on, id) and the cursor must carry the priority.
+     */
+    @Transactional(readOnly = true)
+    public TodoPage<TodoCursor> findPageByUserId(long userId, TodoFilter filter, TodoCursor after, int limit) {
+        return findPage(pageQuery(userId, filter, after, limit), limit);
+    }
+
+    private TodoPage<TodoCursor> findPage(PageQuery query, int limit) {
+        var todos = jdbcTemplate.query(query.getSql(), query.getParams(), this::mapRow);
+
+        if (todos.size() <= limit) {
+            return new TodoPage<>(todos, null);
+        }
+        var page = todos.subList(0, limit);
+        return new TodoPage<>(page, TodoCursor.after(page.get(limit - 1)));
+    }
+
+    /**
+     * A user's todos matching the words in the query, best match first. Matching uses the GIN index on the
+     * trigger-maintained search vector, title words rank above description words.
+     */
+    @Transactional(readOnly = true)
+    public TodoPage<TodoSearchCursor> search(long userId, String query, TodoSearchCursor after, int limit) {
+        var params = new MapSqlParameterSource()
+                .addValue(FIELD_USER_ID, userId)
+                .addValue("query", query)
+                .addValue("limit", limit + 1);
+        var afterCondition = "";
+        if (after != null) {
+            afterCondition = " where (rank, " + FIELD_ID + ") < (:after_rank, :after_id)";
+            params.addValue("after_rank", after.getRank());
+            params.addValue("after_id", after.getId());
+        }
+
+        var ranks = new ArrayList<Float>();
+        var todos = jdbcTemplate.query(
+                "select " + COLUMNS + ", rank from (" +
+                        "select " + COLUMNS + ", ts_rank(" + FIELD_SEARCH_VECTOR + ", query) as rank" +
+                        " from " + TABLE_NAME + ", plainto_tsquery('pg_catalog.english', :query) query" +
+                        " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID +
+                        " and " + FIELD_SEARCH_VECTOR + " @@ query" +
+                        ") ranked" + afterCondition +
+                        " order by rank desc, " + FIELD_ID + " desc" +
+                        " limit :limit",
+                params,
+                (rs, rowNum) -> {
+                    ranks.add(rs.getFloat(COLUMN_COUNT + 1));
+                    return mapRow(rs, rowNum);
+                });
+
+        if (todos.size() <= limit) {
+            return new TodoPage<>(todos, null);
+        }
+        return new TodoPage<>(
+                todos.subList(0, limit),
+                new TodoSearchCursor(ranks.get(limit - 1), todos.get(limit - 1).getId()));
+    }
+
+    PageQuery pageQuery(Long userId, TodoFilter filter, TodoCursor after, int limit) {
+        var conditions = new ArrayList<String>();
+        var params = new MapSqlParameterSource();
+
+        if (userId != null) {
+            conditions.add(FIELD_USER_ID + " = :" + FIELD_USER_ID);
+            params.addValue(FIELD_USER_ID, userId);
+        }
+        if (filter.getStatuses() != null && !filter.getStatuses().isEmpty()) {
+            conditions.add(FIELD_STATUS + " in (:" + FIELD_STATUS + ")");
+            params.addValue(FIELD_STATUS, codes(filter.getStatuses(), TodoStatus::getCode));
+        }
+        if (filter.getPriorities() != null && !filter.getPriorities().isEmpty()) {
+            conditions.add(FIELD_PRIORITY + " in (:" + FIELD_PRIORITY + ")");
+            params.addValue(FIELD_PRIORITY, codes(filter.getPriorities(), TodoPriority::getCode));
+        }
+        if (filter.getCreatedFrom() != null) {
+            conditions.add(FIELD_CREATED_ON + " >= :created_from");
+            params.addValue("created_from", Timestamp.from(filter.getCreatedFrom()));
+        }
+        if (filter.getCreatedTo() != null) {
+            conditions.add(FIELD_CREATED_ON + " < :created_to");
+            params.addValue("created_to", Timestamp.from(filter.getCreatedTo()));
+        }
+
+        var descending = filter.getOrder() == TodoSortOrder.DESC;
+        var byPriority = filter.getSort() == TodoSortKey.PRIORITY;
+        if (after != null) {
+            conditions.add("(" + (byPriority ? FIELD_PRIORITY + ", " : "") + FIELD_CREATED_ON + ", " + FIELD_ID + ")" +
+                    (descending ? " < " : " > ") +
+                    "(" + (byPriority ? ":after_priority, " : "") + ":after_created_on, :after_id)");
+            if (byPriority) {
+                params.addValue("after_priority", after.getPriority().getCode());
+            }
+            params.addValue("after_created_on", Timestamp.from(after.getCreatedOn()));
+            params.addValue("after_id", after.getId());
+        }
+        // One extra row tells us whether there is a next page
+        params.addValue("limit", limit + 1);
+
+        var direction = descending ? " desc" : "";
+        return new PageQuery(
+                "select " + COLUMNS + " from " + TABLE_NAME +
+                        (conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions)) +
+                        " order by " + (byPriority ? FIELD_PRIORITY + direction + ", " : "") +
+                        FIELD_CREATED_ON + direction + ", " + FIELD_ID + direction +
+                        " limit :limit",
+                params);
+    }
+
+    private SqlParameterSource patchParameters(long userId, TodoPatch patch) {
+        return new MapSqlParameterSource()
+                .addValue(FIELD_ID, patch.getId())
+                .addValue(FIELD_USER_ID, userId)
+                .addValue(FIELD_TITLE, patch.getTitle(), Types.VARCHAR)
+                .addValue(FIELD_DESCRIPTION, patch.getDescription(), Types.VARCHAR)
+                .addValue(FIELD_PRIORITY, patch.getPriority() == null ? null : patch.getPriority().getCode(), Types.SMALLINT)
+                .addValue(FIELD_STATUS, patch.getStatus() == null ? null : patch.getStatus().getCode(), Types.SMALLINT)
+                .addValue("expected_version", patch.getVersion(), Types.BIGINT);
+    }
+
+    private static <T> List<Short> codes(Set<T> values, Function<T, Short> code) {
+        return values.stream().map(code).collect(Collectors.toList());
+    }
+
+    @Value
+    static class PageQuery {
+        private String sql;
+        private MapSqlParameterSource params;
+    }
+
     public Todo insert(Todo todo) {
         var keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(
@@ -74,10 +281,11 @@ public class TodoRepository {
                         FIELD_TITLE, todo.getTitle(),
                         FIELD_DESCRIPTION, todo.getDescription(),
                         FIELD_CREATED_ON, Timestamp.from(todo.getCreatedOn()),
-                        FIELD_PRIORITY, todo.getPriority().name(),
-                        FIELD_STATUS, todo.getStatus().name()),
+                        FIELD_PRIORITY, todo.getPriority().getCode(),
+                        FIELD_STATUS, todo.getStatus().getCode()),
                 keyHolder);
-        return todo.withId((Long) Objects.requireNonNull(keyHolder.getKeys()).get(FIELD_ID));
+        var keys = Objects.requireNonNull(keyHolder.getKeys());
+        return todo.withId((Long) keys.get(FIELD_ID)).withVersion((Long) keys.get(FIELD_VERSION));
     }
 
     public boolean update(Todo todo) {
@@ -97,8 +305,119 @@ public class TodoRepository {
                         FIELD_TITLE,  todo.getTitle(),
                         FIELD_DESCRIPTION, todo.getDescription(),
                         FIELD_CREATED_ON, Timestamp.from(todo.getCreatedOn()),
-                        FIELD_PRIORITY, todo.getPriority().name(),
-                        FIELD_STATUS, todo.getStatus().name()));
+                        FIELD_PRIORITY, todo.getPriority().getCode(),
+                        FIELD_STATUS, todo.getStatus().getCode()));
+        return updateCount == 1;
+    }
+
+    /**
+     * Inserts the todos with a single multi-row insert, returning them with their ids in the same order.
+     */
+    public List<Todo> insertAll(List<Todo> todos) {
+        if (todos.isEmpty()) {
+            return List.of();
+        }
+
+        var values = new StringJoiner(",");
+        var params = new MapSqlParameterSource();
+        for (int i = 0; i < todos.size(); i++) {
+            var todo = todos.get(i);
+            values.add("(:user_id" + i + ", :title" + i + ", :description" + i + ", " +
+                    ":created_on" + i + ", :priority" + i + ", :status" + i + ")");
+            params.addValue(FIELD_USER_ID + i, todo.getUserId());
+            params.addValue(FIELD_TITLE + i, todo.getTitle());
+            params.addValue(FIELD_DESCRIPTION + i, todo.getDescription(), Types.VARCHAR);
+            params.addValue(FIELD_CREATED_ON + i, Timestamp.from(todo.getCreatedOn()));
+            params.addValue(FIELD_PRIORITY + i, todo.getPriority().getCode());
+            params.addValue(FIELD_STATUS + i, todo.getStatus().getCode());
+        }
+
+        // Postgres returns the rows of a multi-row insert in values order
+        var keys = jdbcTemplate.queryForList(
+                "insert into " + TABLE_NAME + "(" +
+                        FIELD_USER_ID + ", " +
+                        FIELD_TITLE + ", " +
+                        FIELD_DESCRIPTION + ", " +
+                        FIELD_CREATED_ON + ", " +
+                        FIELD_PRIORITY + ", " +
+                        FIELD_STATUS + ")" +
+                        " values " + values +
+                        " returning " + FIELD_ID + ", " + FIELD_VERSION,
+                params);
+
+        var inserted = new ArrayList<Todo>(todos.size());
+        for (int i = 0; i < todos.size(); i++) {
+            var key = keys.get(i);
+            inserted.add(todos.get(i).withId((Long) key.get(FIELD_ID)).withVersion((Long) key.get(FIELD_VERSION)));
+        }
+        return inserted;
+    }
+
+    /**
+     * Patches one of the user's todos and returns it as updated, in a single statement. Empty when the todo
+     * does not exist, belongs to someone else or is no longer at the patch's version.
+     */
+    public Optional<Todo> patch(long userId, TodoPatch patch) {
+        return jdbcTemplate.query(
+                PATCH_SQL + " returning " + COLUMNS,
+                patchParameters(userId, patch),
+                this::mapRow).stream().findFirst();
+    }
+
+    /**
+     * Applies the patches to the user's todos as one JDBC batch, returning the row count of each, 0 where the
+     * todo does not exist or belongs to someone else.
+     */
+    public int[] patchAll(long userId, List<TodoPatch> patches) {
+        var params = patches.stream()
+                .map(patch -> patchParameters(userId, patch))
+                .toArray(SqlParameterSource[]::new);
+        return jdbcTemplate.batchUpdate(PATCH_SQL, params);
+    }
+
+    /**
+     * Deletes the user's todos as one JDBC batch, returning the row count of each id.
+     */
+    public int[] deleteAll(long userId, List<Long> ids) {
+        var params = ids.stream()
+                .map(id -> new MapSqlParameterSource()
+                        .addValue(FIELD_ID, id)
+                        .addValue(FIELD_USER_ID, userId))
+                .toArray(SqlParameterSource[]::new);
+        return jdbcTemplate.batchUpdate(
+                "delete from " + TABLE_NAME + " where " +
+                        FIELD_ID + " = :" + FIELD_ID + " and " +
+                        FIELD_USER_ID + " = :" + FIELD_USER_ID,
+                params);
+    }
+
+    /**
+     * Moves all of the user's todos, or only those in one of the given statuses, to a new status in a single
+     * statement. Returns how many todos changed.
+     */
+    public int updateStatus(long userId, Set<TodoStatus> fromStatuses, TodoStatus status) {
+        var params = new MapSqlParameterSource()
+                .addValue(FIELD_USER_ID, userId)
+                .addValue(FIELD_STATUS, status.getCode());
+        var fromCondition = "";
+        if (fromStatuses != null && !fromStatuses.isEmpty()) {
+            fromCondition = " and " + FIELD_STATUS + " in (:from_status)";
+            params.addValue("from_status", codes(fromStatuses, TodoStatus::getCode));
+        }
+        return jdbcTemplate.update(
+                "update " + TABLE_NAME + " set " + FIELD_STATUS + " = :" + FIELD_STATUS +
+                        " where " + FIELD_USER_ID + " = :" + FIELD_USER_ID +
+                        " and " + FIELD_STATUS + " <> :" + FIELD_STATUS +
+                        fromCondition,
+                params);
+    }
+
+    public boolean deleteByIdAndUserId(long id, long userId) {
+        var updateCount = jdbcTemplate.update(
+                "delete from " + TABLE_NAME + " where " +
+                        FIELD_ID + " = :" + FIELD_ID + " and " +
+                        FIELD_USER_ID + " = :" + FIELD_USER_ID,
+                Map.of(FIELD_ID, id, FIELD_USER_ID, userId));
         return updateCount == 1;
     }
 
@@ -118,16 +437,37 @@ public class TodoRepository {
     private final String FIELD_CREATED_ON = "created_on";
     private final String FIELD_PRIORITY = "priority";
     private final String FIELD_STATUS = "status";
+    private final String FIELD_VERSION = "version";
+    private final String FIELD_SEARCH_VECTOR = "search_vector";
+
+    // Everything but the search vector, which is only read by the database. Like the names above it is a
+    // constant, so every statement concatenated from them alone is folded by the compiler, not built per call.
+    private final String COLUMNS = FIELD_ID + ", " + FIELD_USER_ID + ", " + FIELD_TITLE + ", " + FIELD_DESCRIPTION +
+            ", " + FIELD_CREATED_ON + ", " + FIELD_PRIORITY + ", " + FIELD_STATUS + ", " + FIELD_VERSION;
+
+    private final int COLUMN_COUNT = 8;
+
+    private final String PATCH_SQL = "update " + TABLE_NAME + " set " +
+            FIELD_TITLE + " = coalesce(:" + FIELD_TITLE + ", " + FIELD_TITLE + "), " +
+            FIELD_DESCRIPTION + " = coalesce(:" + FIELD_DESCRIPTION + ", " + FIELD_DESCRIPTION + "), " +
+            FIELD_PRIORITY + " = coalesce(:" + FIELD_PRIORITY + ", " + FIELD_PRIORITY + "), " +
+            FIELD_STATUS + " = coalesce(:" + FIELD_STATUS + ", " + FIELD_STATUS + ")" +
+            " where " +
+            FIELD_ID + " = :" + FIELD_ID + " and " +
+            FIELD_USER_ID + " = :" + FIELD_USER_ID + " and " +
+            "(cast(:expected_version as bigint) is null or " + FIELD_VERSION + " = :expected_version)";
 
-    private Todo mapRow(ResultSet rs, int rowNum) throws SQLException {
+    // By position in COLUMNS, which saves looking every column up by name on every row
+    Todo mapRow(ResultSet rs, int rowNum) throws SQLException {
         return Todo.builder()
-                .id(rs.getLong(FIELD_ID))
-                .userId(rs.getLong(FIELD_USER_ID))
-                .title(rs.getString(FIELD_TITLE))
-                .description(rs.getString(FIELD_DESCRIPTION))
-                .createdOn(rs.getTimestamp(FIELD_CREATED_ON).toInstant())
-                .priority(TodoPriority.valueOf(rs.getString(FIELD_PRIORITY)))
-                .status(TodoStatus.valueOf(rs.getString(FIELD_STATUS)))
+                .id(rs.getLong(1))
+                .userId(rs.getLong(2))
+                .title(rs.getString(3))
+                .description(rs.getString(4))
+                .createdOn(rs.getTimestamp(5).toInstant())
+                .priority(TodoPriority.ofCode(rs.getShort(6)))
+                .status(TodoStatus.ofCode(rs.getShort(7)))
+                .version(rs.getLong(8))
                 .build();
     }
 }
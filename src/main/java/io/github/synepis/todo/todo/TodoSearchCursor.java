@@ -0,0 +1,37 @@
+package io.github.synepis.todo.todo;
+
+import io.github.synepis.todo.exception.BadRequestException;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last todo on a page of search results, in (rank desc, id desc) order.
+ */
+@Value
+public class TodoSearchCursor implements TodoPage.Cursor {
+
+    private float rank;
+
+    private long id;
+
+    @Override
+    public String encode() {
+        // Float.toString round-trips exactly, so the next page starts right after this row
+        var value = Float.toString(rank) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TodoSearchCursor decode(String cursor) {
+        try {
+            var parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 2) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return new TodoSearchCursor(Float.parseFloat(parts[0]), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package io.github.synepis.todo.todo;
+
+/**
+ * What a user's todos are listed by, creation and then id break ties.
+ */
+public enum TodoSortKey {
+    CREATED_ON,
+    PRIORITY
+}
@@ -0,0 +1,6 @@
+package io.github.synepis.todo.todo;
+
+public enum TodoSortOrder {
+    ASC,
+    DESC
+}
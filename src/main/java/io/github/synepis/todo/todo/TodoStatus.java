@@ -1,7 +1,33 @@
 package io.github.synepis.todo.todo;
 
+/**
+ * Stored as its code, which follows the progress from not started to done. Codes are in the database: never
+ * change or reuse one.
+ */
 public enum TodoStatus {
-    NOT_STARTED,
-    IN_PROGRESS,
-    DONE,
+    NOT_STARTED(0),
+    IN_PROGRESS(1),
+    DONE(2);
+
+    private static final TodoStatus[] BY_CODE = new TodoStatus[values().length];
+
+    static {
+        for (var status : values()) {
+            BY_CODE[status.code] = status;
+        }
+    }
+
+    private final short code;
+
+    TodoStatus(int code) {
+        this.code = (short) code;
+    }
+
+    public short getCode() {
+        return code;
+    }
+
+    public static TodoStatus ofCode(int code) {
+        return BY_CODE[code];
+    }
 }
@@ -0,0 +1,41 @@
+package io.github.synepis.todo.todo.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import io.github.synepis.todo.todo.TodoPriority;
+import io.github.synepis.todo.todo.TodoStatus;
+import lombok.Builder;
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+import java.util.Set;
+
+/**
+ * One operation of a batch. CREATE takes the same fields as a create request and UPDATE the same as an update
+ * request, UPDATE and DELETE also need the todo's id. SET_STATUS moves all of the user's todos, or only those
+ * in fromStatuses, to todoStatus.
+ */
+@Value
+@Builder
+@JsonDeserialize(builder = TodoBatchOperation.TodoBatchOperationBuilder.class)
+public class TodoBatchOperation {
+
+    @NotNull
+    private TodoBatchOperationType type;
+
+    private Long id;
+
+    private String title;
+
+    private String description;
+
+    private TodoPriority todoPriority;
+
+    private TodoStatus todoStatus;
+
+    private Set<TodoStatus> fromStatuses;
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class TodoBatchOperationBuilder {
+    }
+}
@@ -0,0 +1,8 @@
+package io.github.synepis.todo.todo.dto;
+
+public enum TodoBatchOperationType {
+    CREATE,
+    UPDATE,
+    DELETE,
+    SET_STATUS
+}
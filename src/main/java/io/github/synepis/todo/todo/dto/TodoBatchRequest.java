@@ -0,0 +1,24 @@
+package io.github.synepis.todo.todo.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import lombok.Builder;
+import lombok.Value;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+@Value
+@Builder
+@JsonDeserialize(builder = TodoBatchRequest.TodoBatchRequestBuilder.class)
+public class TodoBatchRequest {
+
+    @Valid
+    @NotEmpty
+    private List<TodoBatchOperation> operations;
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class TodoBatchRequestBuilder {
+    }
+}
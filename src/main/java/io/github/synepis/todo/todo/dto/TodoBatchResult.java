@@ -0,0 +1,36 @@
+package io.github.synepis.todo.todo.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Outcome of one batch operation, at the same position as the operation. id is set for single todo
+ * operations, count for SET_STATUS.
+ */
+@Value
+@Builder
+@JsonDeserialize(builder = TodoBatchResult.TodoBatchResultBuilder.class)
+public class TodoBatchResult {
+
+    private Outcome outcome;
+
+    private Long id;
+
+    private Integer count;
+
+    private String message;
+
+    public enum Outcome {
+        CREATED,
+        UPDATED,
+        DELETED,
+        NOT_FOUND,
+        INVALID
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class TodoBatchResultBuilder {
+    }
+}
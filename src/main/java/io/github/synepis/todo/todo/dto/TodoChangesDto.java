@@ -0,0 +1,45 @@
+package io.github.synepis.todo.todo.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import io.github.synepis.todo.todo.TodoChanges;
+import io.github.synepis.todo.todo.TodoDeletion;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Todos to upsert and ids of todos to drop, then sync again from cursor, right away if more is set.
+ */
+@Value
+@Builder
+@JsonDeserialize(builder = TodoChangesDto.TodoChangesDtoBuilder.class)
+public class TodoChangesDto {
+
+    private List<TodoDto> todos;
+
+    private List<Long> deletedIds;
+
+    private String cursor;
+
+    private boolean more;
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class TodoChangesDtoBuilder {
+    }
+
+    public static TodoChangesDto map(TodoChanges changes) {
+        return TodoChangesDto.builder()
+                .todos(changes.getTodos().stream()
+                        .map(TodoDto::map)
+                        .collect(Collectors.toList()))
+                .deletedIds(changes.getDeletions().stream()
+                        .map(TodoDeletion::getTodoId)
+                        .collect(Collectors.toList()))
+                .cursor(changes.getCursor().encode())
+                .more(changes.isMore())
+                .build();
+    }
+}
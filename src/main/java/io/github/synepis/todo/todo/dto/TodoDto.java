@@ -37,6 +37,8 @@ public class TodoDto {
     @NonNull
     private TodoStatus status;
 
+    private Long version;
+
     @JsonPOJOBuilder(withPrefix = "")
     public static class TodoDtoBuilder {
     }
@@ -50,6 +52,7 @@ public class TodoDto {
                 .createdOn(todo.getCreatedOn())
                 .priority(todo.getPriority())
                 .status(todo.getStatus())
+                .version(todo.getVersion())
                 .build();
     }
 }
@@ -0,0 +1,65 @@
+package io.github.synepis.todo.todo.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import io.github.synepis.todo.todo.TodoCount;
+import io.github.synepis.todo.todo.TodoPriority;
+import io.github.synepis.todo.todo.TodoStatus;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Number of todos, in total and by status and priority. An approximate total comes without a breakdown.
+ */
+@Value
+@Builder
+@JsonDeserialize(builder = TodoStatisticsDto.TodoStatisticsDtoBuilder.class)
+public class TodoStatisticsDto {
+
+    private long total;
+
+    private boolean approximate;
+
+    private Map<TodoStatus, Long> byStatus;
+
+    private Map<TodoPriority, Long> byPriority;
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class TodoStatisticsDtoBuilder {
+    }
+
+    public static TodoStatisticsDto map(List<TodoCount> counts) {
+        var total = 0L;
+        var byStatus = new EnumMap<TodoStatus, Long>(TodoStatus.class);
+        var byPriority = new EnumMap<TodoPriority, Long>(TodoPriority.class);
+        for (var status : TodoStatus.values()) {
+            byStatus.put(status, 0L);
+        }
+        for (var priority : TodoPriority.values()) {
+            byPriority.put(priority, 0L);
+        }
+
+        for (var count : counts) {
+            total += count.getCount();
+            byStatus.merge(count.getStatus(), count.getCount(), Long::sum);
+            byPriority.merge(count.getPriority(), count.getCount(), Long::sum);
+        }
+
+        return TodoStatisticsDto.builder()
+                .total(total)
+                .byStatus(byStatus)
+                .byPriority(byPriority)
+                .build();
+    }
+
+    public static TodoStatisticsDto approximate(long total) {
+        return TodoStatisticsDto.builder()
+                .total(total)
+                .approximate(true)
+                .build();
+    }
+}
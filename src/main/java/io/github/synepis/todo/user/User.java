@@ -30,6 +30,8 @@ public class User {
 
     private Instant lastLoginOn;
 
+    private Instant lastSeenOn;
+
     @NonNull
     private Set<UserRole> roles;
 
@@ -41,6 +43,7 @@ public class User {
                 .append("email", email)
                 .append("createdOn", createdOn)
                 .append("lastLoginOn", lastLoginOn)
+                .append("lastSeenOn", lastSeenOn)
                 .append("roles", roles)
                 .build();
     }
@@ -0,0 +1,20 @@
+package io.github.synepis.todo.user;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Latest login and request times buffered for a user, either may be null.
+ */
+@Value
+@Builder
+public class UserActivity {
+
+    private long userId;
+
+    private Instant lastLoginOn;
+
+    private Instant lastSeenOn;
+}
@@ -0,0 +1,131 @@
+package io.github.synepis.todo.user;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind buffer for users' last login and last seen times.
+ *
+ * Recording only touches memory, repeated activity by the same user coalesces into one pending entry, and
+ * pending entries are written periodically with one batched update per chunk. The buffer is bounded: once
+ * full, activity for users not already pending is dropped until the next flush. This is bookkeeping, a
+ * crash loses at most one flush interval of it.
+ *
+ * Entries are only changed inside {@code compute}, atomically with respect to the flush removing them, so an
+ * update lands either in the entry being written or in a new one.
+ */
+@Slf4j
+@Component
+public class UserActivityRecorder {
+
+    private final UserRepository userRepository;
+
+    private final int maxPending;
+
+    private final int batchSize;
+
+    private final ConcurrentHashMap<Long, PendingActivity> pending = new ConcurrentHashMap<>();
+
+    private final Counter flushed;
+
+    private final Counter dropped;
+
+    public UserActivityRecorder(UserRepository userRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${user.activity.max-pending}") int maxPending,
+                                @Value("${user.activity.batch-size}") int batchSize) {
+        this.userRepository = userRepository;
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+        this.flushed = meterRegistry.counter("user.activity.flushed");
+        this.dropped = meterRegistry.counter("user.activity.dropped");
+        meterRegistry.gauge("user.activity.pending", pending, ConcurrentHashMap::size);
+    }
+
+    public void recordLogin(long userId, Instant now) {
+        record(userId, activity -> activity.login(now));
+    }
+
+    public void recordSeen(long userId, Instant now) {
+        record(userId, activity -> activity.seen(now));
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${user.activity.flush-interval}")
+    public void flush() {
+        var batch = new ArrayList<UserActivity>(Math.min(batchSize, pending.size()));
+
+        for (var userId : pending.keySet()) {
+            var activity = pending.remove(userId);
+            if (activity != null) {
+                batch.add(activity.toUserActivity(userId));
+            }
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch.clear();
+            }
+        }
+
+        write(batch);
+    }
+
+    private void record(long userId, Consumer<PendingActivity> update) {
+        if (pending.size() >= maxPending && !pending.containsKey(userId)) {
+            dropped.increment();
+            return;
+        }
+        pending.compute(userId, (id, activity) -> {
+            var updated = activity != null ? activity : new PendingActivity();
+            update.accept(updated);
+            return updated;
+        });
+    }
+
+    private void write(ArrayList<UserActivity> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            userRepository.updateActivity(batch);
+            flushed.increment(batch.size());
+        } catch (RuntimeException ex) {
+            log.warn("Failed to write activity for {} users", batch.size(), ex);
+        }
+    }
+
+    private static class PendingActivity {
+        private Instant lastLoginOn;
+        private Instant lastSeenOn;
+
+        private void login(Instant now) {
+            lastLoginOn = later(lastLoginOn, now);
+            lastSeenOn = later(lastSeenOn, now);
+        }
+
+        private void seen(Instant now) {
+            lastSeenOn = later(lastSeenOn, now);
+        }
+
+        private UserActivity toUserActivity(long userId) {
+            return UserActivity.builder()
+                    .userId(userId)
+                    .lastLoginOn(lastLoginOn)
+                    .lastSeenOn(lastSeenOn)
+                    .build();
+        }
+
+        private static Instant later(Instant current, Instant candidate) {
+            return current == null || candidate.isAfter(current) ? candidate : current;
+        }
+    }
+}
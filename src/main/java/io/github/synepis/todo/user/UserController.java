@@ -1,22 +1,29 @@
 package io.github.synepis.todo.user;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.synepis.todo.exception.ResourceNotFoundException;
+import io.github.synepis.todo.security.AuthTokenRevocations;
+import io.github.synepis.todo.security.PasswordHasher;
 import io.github.synepis.todo.security.annotations.AuthorizedAsAdmin;
 import io.github.synepis.todo.security.annotations.AuthorizedAsAdminOrOwner;
 import io.github.synepis.todo.user.dto.CreateUserRequest;
 import io.github.synepis.todo.user.dto.UpdateUserRequest;
 import io.github.synepis.todo.user.dto.UserDto;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.time.Clock;
-import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+import static io.github.synepis.todo.utils.FutureUtils.unwrapped;
+import static io.github.synepis.todo.utils.JsonUtils.streamJsonArray;
 import static io.github.synepis.todo.utils.NullUtils.firstNonNull;
 
 @Slf4j
@@ -27,20 +34,33 @@ public class UserController {
 
     private UserRepository userRepository;
 
-    private PasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
 
-    public UserController(Clock clock, UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    private AuthTokenRevocations authTokenRevocations;
+
+    private ObjectMapper objectMapper;
+
+    private Executor requestExecutor;
+
+    public UserController(Clock clock,
+                          UserRepository userRepository,
+                          PasswordHasher passwordHasher,
+                          AuthTokenRevocations authTokenRevocations,
+                          ObjectMapper objectMapper,
+                          @Qualifier("applicationTaskExecutor") Executor requestExecutor) {
         this.clock = clock;
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
+        this.authTokenRevocations = authTokenRevocations;
+        this.objectMapper = objectMapper;
+        this.requestExecutor = requestExecutor;
     }
 
     @GetMapping("/users")
     @AuthorizedAsAdmin
-    public List<UserDto> getAllUsers() {
-        return userRepository.findAll().stream()
-                .map(UserDto::map)
-                .collect(Collectors.toList());
+    public ResponseEntity<StreamingResponseBody> getAllUsers() {
+        return streamJsonArray(objectMapper,
+                sink -> userRepository.forEach(user -> sink.accept(UserDto.map(user))));
     }
 
 
@@ -53,23 +73,26 @@ public class UserController {
     }
 
     @PostMapping("/users")
-    public UserDto createUser(@Valid @RequestBody CreateUserRequest createUserRequest) {
-        var user = userRepository.insert(
-                User.builder()
-                        .username(createUserRequest.getUsername())
-                        .email(createUserRequest.getEmail())
-                        .password(passwordEncoder.encode(createUserRequest.getPassword()))
-                        .createdOn(clock.instant())
-                        .roles(Set.of(UserRole.ROLE_USER))
-                        .build());
-        log.info("Created user: {}", user);
-        return UserDto.map(user);
+    public CompletableFuture<UserDto> createUser(@Valid @RequestBody CreateUserRequest createUserRequest) {
+        return unwrapped(passwordHasher.encode(createUserRequest.getPassword())
+                .thenApplyAsync(encodedPassword -> {
+                    var user = userRepository.insert(
+                            User.builder()
+                                    .username(createUserRequest.getUsername())
+                                    .email(createUserRequest.getEmail())
+                                    .password(encodedPassword)
+                                    .createdOn(clock.instant())
+                                    .roles(Set.of(UserRole.ROLE_USER))
+                                    .build());
+                    log.info("Created user: {}", user);
+                    return UserDto.map(user);
+                }, requestExecutor));
     }
 
     @PutMapping("/users/{userId}")
     @PreAuthorize("@authorizationService.isAuthorized(#userId, #updateUserRequest)")
-    public void updateUser(@PathVariable long userId,
-                           @Valid @RequestBody UpdateUserRequest updateUserRequest) throws ResourceNotFoundException {
+    public CompletableFuture<Void> updateUser(@PathVariable long userId,
+                                              @Valid @RequestBody UpdateUserRequest updateUserRequest) throws ResourceNotFoundException {
         var userOptional = userRepository.findById(userId);
         if (!userOptional.isPresent()) {
             throw new ResourceNotFoundException("user not found");
@@ -77,22 +100,31 @@ public class UserController {
 
         var user = userOptional.get();
         var updateUserRequestPassword = updateUserRequest.getPassword() != null
-                ? passwordEncoder.encode(updateUserRequest.getPassword())
-                : null;
-        var userToUpdate =
-                User.builder()
-                        .id(user.getId())
-                        .username(firstNonNull(updateUserRequest.getUsername(), user.getUsername()))
-                        .password(firstNonNull(updateUserRequestPassword, user.getPassword()))
-                        .email(firstNonNull(updateUserRequest.getEmail(), user.getEmail()))
-                        .roles(firstNonNull(updateUserRequest.getRoles(), user.getRoles()))
-                        .createdOn(user.getCreatedOn())
-                        .lastLoginOn(user.getLastLoginOn())
-                        .build();
-
-        userRepository.update(userToUpdate);
-
-        log.info("Updated user {}", user);
+                ? passwordHasher.encode(updateUserRequest.getPassword())
+                : CompletableFuture.<String>completedFuture(null);
+
+        return unwrapped(updateUserRequestPassword.thenAcceptAsync(encodedPassword -> {
+            var userToUpdate =
+                    User.builder()
+                            .id(user.getId())
+                            .username(firstNonNull(updateUserRequest.getUsername(), user.getUsername()))
+                            .password(firstNonNull(encodedPassword, user.getPassword()))
+                            .email(firstNonNull(updateUserRequest.getEmail(), user.getEmail()))
+                            .roles(firstNonNull(updateUserRequest.getRoles(), user.getRoles()))
+                            .createdOn(user.getCreatedOn())
+                            .lastLoginOn(user.getLastLoginOn())
+                            .lastSeenOn(user.getLastSeenOn())
+                            .build();
+
+            userRepository.update(userToUpdate);
+
+            if (!userToUpdate.getRoles().equals(user.getRoles())) {
+                // Cached and signed authentications carry the old roles
+                authTokenRevocations.revokeUser(userId);
+            }
+
+            log.info("Updated user {}", user);
+        }, requestExecutor));
     }
 
     @DeleteMapping("/users/{userId}")
@@ -105,6 +137,7 @@ public class UserController {
         }
 
         userRepository.delete(userLogin.get());
+        authTokenRevocations.revokeUser(userId);
     }
 
 }
@@ -1,14 +1,18 @@
 package io.github.synepis.todo.user;
 
 import io.github.synepis.todo.utils.SqlUtils;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -29,20 +33,30 @@ public class UserRepository {
 
     public Optional<User> findById(Long id) {
         return jdbcTemplate.query(
-                "select * from " + TABLE_NAME + " where " + FIELD_ID + " = :" + FIELD_ID,
+                "select " + COLUMNS + " from " + TABLE_NAME + " where " + FIELD_ID + " = :" + FIELD_ID,
                 Map.of(FIELD_ID, id),
                 this::mapRow).stream().findFirst();
     }
 
     public Optional<User> findByUsername(String username) {
         return jdbcTemplate.query(
-                "select * from " + TABLE_NAME + " where " + FIELD_USERNAME + " = :" + FIELD_USERNAME,
+                "select " + COLUMNS + " from " + TABLE_NAME + " where " + FIELD_USERNAME + " = :" + FIELD_USERNAME,
                 Map.of(FIELD_USERNAME, username),
                 this::mapRow).stream().findFirst();
     }
 
     public List<User> findAll() {
-        return jdbcTemplate.query("select * from " + TABLE_NAME, Map.of(), this::mapRow);
+        return jdbcTemplate.query("select " + COLUMNS + " from " + TABLE_NAME, Map.of(), this::mapRow);
+    }
+
+    /**
+     * Hands every row to the action as it is read, in id order, without materializing the table.
+     */
+    @Transactional(readOnly = true)
+    public void forEach(Consumer<User> action) {
+        jdbcTemplate.getJdbcTemplate().query(
+                SqlUtils.streamingStatement("select " + COLUMNS + " from " + TABLE_NAME + " order by " + FIELD_ID),
+                (RowCallbackHandler) rs -> action.accept(mapRow(rs, 0)));
     }
 
     public User insert(User user) {
@@ -95,6 +109,37 @@ public class UserRepository {
         return updateCount == 1;
     }
 
+    /**
+     * Applies buffered login and activity times in a single statement. Times only ever move forward, so
+     * late or overlapping flushes are harmless.
+     */
+    public int updateActivity(List<UserActivity> activities) {
+        if (activities.isEmpty()) {
+            return 0;
+        }
+
+        var values = new StringJoiner(",");
+        var params = new MapSqlParameterSource();
+        for (int i = 0; i < activities.size(); i++) {
+            var activity = activities.get(i);
+            values.add("(cast(:id" + i + " as bigint)," +
+                    " cast(:last_login_on" + i + " as timestamp)," +
+                    " cast(:last_seen_on" + i + " as timestamp))");
+            params.addValue(FIELD_ID + i, activity.getUserId());
+            params.addValue(FIELD_LAST_LOGIN_ON + i, SqlUtils.mapNullableInstant(activity.getLastLoginOn()));
+            params.addValue(FIELD_LAST_SEEN_ON + i, SqlUtils.mapNullableInstant(activity.getLastSeenOn()));
+        }
+
+        return jdbcTemplate.update(
+                "update " + TABLE_NAME + " u set " +
+                        FIELD_LAST_LOGIN_ON + " = greatest(u." + FIELD_LAST_LOGIN_ON + ", v." + FIELD_LAST_LOGIN_ON + ")," +
+                        FIELD_LAST_SEEN_ON + " = greatest(u." + FIELD_LAST_SEEN_ON + ", v." + FIELD_LAST_SEEN_ON + ")" +
+                        " from (values " + values + ") as v(" +
+                        FIELD_ID + "," + FIELD_LAST_LOGIN_ON + "," + FIELD_LAST_SEEN_ON + ")" +
+                        " where u." + FIELD_ID + " = v." + FIELD_ID,
+                params);
+    }
+
     public boolean delete(User user) {
         var updateCount = jdbcTemplate.update(
                 "delete from " + TABLE_NAME + " where " + FIELD_ID + " = :" + FIELD_ID,
@@ -110,17 +155,23 @@ public class UserRepository {
     private final String FIELD_PASSWORD = "password";
     private final String FIELD_CREATED_ON = "created_on";
     private final String FIELD_LAST_LOGIN_ON = "last_login_on";
+    private final String FIELD_LAST_SEEN_ON = "last_seen_on";
     private final String FIELD_ROLES = "roles";
 
+    private final String COLUMNS = FIELD_ID + ", " + FIELD_USERNAME + ", " + FIELD_EMAIL + ", " + FIELD_PASSWORD +
+            ", " + FIELD_CREATED_ON + ", " + FIELD_LAST_LOGIN_ON + ", " + FIELD_LAST_SEEN_ON + ", " + FIELD_ROLES;
+
+    // By position in COLUMNS
     private User mapRow(ResultSet rs, int rowNum) throws SQLException {
         return User.builder()
-                .id(rs.getLong(FIELD_ID))
-                .username(rs.getString(FIELD_USERNAME))
-                .email(rs.getString(FIELD_EMAIL))
-                .password(rs.getString(FIELD_PASSWORD))
-                .createdOn(rs.getTimestamp(FIELD_CREATED_ON).toInstant())
-                .lastLoginOn(SqlUtils.mapNullableTimestamp(rs.getTimestamp(FIELD_LAST_LOGIN_ON)))
-                .roles(parseRoles(rs.getString(FIELD_ROLES)))
+                .id(rs.getLong(1))
+                .username(rs.getString(2))
+                .email(rs.getString(3))
+                .password(rs.getString(4))
+                .createdOn(rs.getTimestamp(5).toInstant())
+                .lastLoginOn(SqlUtils.mapNullableTimestamp(rs.getTimestamp(6)))
+                .lastSeenOn(SqlUtils.mapNullableTimestamp(rs.getTimestamp(7)))
+                .roles(parseRoles(rs.getString(8)))
                 .build();
     }
 
@@ -128,7 +179,7 @@ public class UserRepository {
         return String.join(",", roles.stream().map(Enum::name).collect(Collectors.toSet()));
     }
 
-    private Set<UserRole> parseRoles(String roles) {
+    public static Set<UserRole> parseRoles(String roles) {
         return roles != null
                 ? Stream.of(roles.split(",")).map(UserRole::valueOf).collect(Collectors.toSet())
                 : Set.of();
@@ -29,6 +29,8 @@ public class UserDto {
 
     private Instant lastLoginOn;
 
+    private Instant lastSeenOn;
+
     @JsonPOJOBuilder(withPrefix = "")
     public static class UserDtoBuilder {
     }
@@ -40,6 +42,7 @@ public class UserDto {
                 .email(user.getEmail())
                 .createdOn(user.getCreatedOn())
                 .lastLoginOn(user.getLastLoginOn())
+                .lastSeenOn(user.getLastSeenOn())
                 .build();
     }
 }
@@ -0,0 +1,25 @@
+package io.github.synepis.todo.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public class FutureUtils {
+
+    /**
+     * The same outcome, but failed with what a stage threw rather than the {@link CompletionException} wrapping
+     * it, which MVC would otherwise hand to the exception handlers as is.
+     */
+    public static <T> CompletableFuture<T> unwrapped(CompletableFuture<T> future) {
+        var result = new CompletableFuture<T>();
+        future.whenComplete((value, ex) -> {
+            if (ex == null) {
+                result.complete(value);
+            } else if (ex instanceof CompletionException && ex.getCause() != null) {
+                result.completeExceptionally(ex.getCause());
+            } else {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+}
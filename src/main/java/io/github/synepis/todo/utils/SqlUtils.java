@@ -1,5 +1,6 @@
 package io.github.synepis.todo.utils;
 
+import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 
@@ -10,6 +11,8 @@ import java.time.Instant;
 
 public class SqlUtils {
 
+    public static final int STREAMING_FETCH_SIZE = 500;
+
     public static Long mapCountRow(ResultSet rs, int rowNum) throws SQLException {
         return rs.getLong(1);
     }
@@ -22,6 +25,18 @@ public class SqlUtils {
         return timestamp != null ? timestamp.toInstant() : null;
     }
 
+    /**
+     * A forward-only statement that fetches rows in chunks rather than all at once. The Postgres driver only
+     * uses a server-side cursor for it inside a transaction, so callers must run it in one.
+     */
+    public static PreparedStatementCreator streamingStatement(String sql) {
+        return connection -> {
+            var statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(STREAMING_FETCH_SIZE);
+            return statement;
+        };
+    }
+
     public static SqlParameterSource parameterMap(Object... args) {
         if (args.length % 2 != 0) {
             throw new IllegalArgumentException("Number of arguments must be even");
@@ -10,4 +10,7 @@ public class Constants {
 
     public static final Pattern VALID_EMAIL_PATTERN =
             Pattern.compile("^(?=.{3,50}$)[A-Z0-9._%+-]+@[A-Z0-9.-]+\\.[A-Z]{2,6}$", Pattern.CASE_INSENSITIVE);
+
+    /* Length of todo.title */
+    public static final int TODO_TITLE_MAX_LENGTH = 200;
 }
@@ -0,0 +1,38 @@
+-- Writers of the same user take their versions one after another, holding a transaction-scoped advisory lock
+-- keyed by the user id until they commit, so versions become visible in order and a reader can never miss one
+-- below the highest it saw. Unlike a row lock on the user, it neither writes the user row nor blocks updates of it
+create or replace function todo_version_update() returns trigger as $$
+begin
+    perform pg_advisory_xact_lock(new.user_id);
+    new.version := nextval('todo_version_seq');
+    return new;
+end
+$$ language plpgsql;
+
+create trigger todo_version_insert before insert on todo
+    for each row execute procedure todo_version_update();
+
+-- Tombstones for delta sync, versioned from the same sequence as the todos they replace
+create table todo_deletion (
+    todo_id bigint primary key,
+    user_id bigint not null,
+    version bigint not null,
+    deleted_on timestamp not null
+);
+
+create index todo_deletion_user_id_version_idx on todo_deletion (user_id, version);
+create index todo_deletion_deleted_on_idx on todo_deletion (deleted_on);
+
+create function todo_deletion_log() returns trigger as $$
+begin
+    if old.user_id is not null then
+        perform pg_advisory_xact_lock(old.user_id);
+        insert into todo_deletion (todo_id, user_id, version, deleted_on)
+            values (old.id, old.user_id, nextval('todo_version_seq'), localtimestamp);
+    end if;
+    return old;
+end
+$$ language plpgsql;
+
+create trigger todo_deletion_log after delete on todo
+    for each row execute procedure todo_deletion_log();
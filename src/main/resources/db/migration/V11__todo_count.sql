@@ -0,0 +1,56 @@
+-- Number of each user's todos by status and priority, kept up to date by triggers on todo
+create table todo_count (
+    user_id bigint not null references "user" on delete cascade,
+    status varchar (20) not null,
+    priority varchar (20) not null,
+    count bigint not null,
+    primary key (user_id, status, priority)
+);
+
+insert into todo_count (user_id, status, priority, count)
+    select user_id, status, priority, count(*) from todo
+    where user_id is not null
+    group by user_id, status, priority;
+
+-- No upsert before 9.5, but every writer holds the user's advisory lock (see todo_count_update), so no other
+-- writer can insert the same counter between the update and the insert
+create function todo_count_add(p_user_id bigint, p_status varchar, p_priority varchar, p_delta bigint)
+        returns void as $$
+begin
+    if p_user_id is null then
+        return;
+    end if;
+    update todo_count set count = count + p_delta
+        where user_id = p_user_id and status = p_status and priority = p_priority;
+    if not found then
+        insert into todo_count (user_id, status, priority, count) values (p_user_id, p_status, p_priority, p_delta);
+    end if;
+end
+$$ language plpgsql;
+
+-- Inserts and updates took the user's advisory lock in the version trigger, before any counter row. Deletes
+-- have no before trigger and this one fires ahead of todo_deletion_log, so take it here, again before any
+-- counter row, or a delete and a write of the same user could each wait for the lock the other holds
+create function todo_count_update() returns trigger as $$
+begin
+    if tg_op = 'DELETE' then
+        perform pg_advisory_xact_lock(old.user_id);
+    end if;
+    if tg_op in ('UPDATE', 'DELETE') then
+        perform todo_count_add(old.user_id, old.status, old.priority, -1);
+    end if;
+    if tg_op in ('INSERT', 'UPDATE') then
+        perform todo_count_add(new.user_id, new.status, new.priority, 1);
+    end if;
+    return null;
+end
+$$ language plpgsql;
+
+create trigger todo_count_insert_delete after insert or delete on todo
+    for each row execute procedure todo_count_update();
+
+create trigger todo_count_update after update of user_id, status, priority on todo
+    for each row when (old.user_id is distinct from new.user_id
+        or old.status is distinct from new.status
+        or old.priority is distinct from new.priority)
+    execute procedure todo_count_update();
@@ -0,0 +1,3 @@
+-- Logins are listed, counted and deleted by user, and deleting a user checks for its logins.
+-- todo.user_id needs no index of its own, it leads the (user_id, created_on, id) index since V6.
+create index user_login_user_id_idx on user_login (user_id);
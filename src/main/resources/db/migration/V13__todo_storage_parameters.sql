@@ -0,0 +1,23 @@
+-- Hash partitioning needs Postgres 11, and inheritance partitioning would lose insert ... returning and the
+-- per-table triggers. Instead, every user-scoped statement reads only that user's rows (checked by
+-- QueryPlanIntSpec), which keeps those reads flat as the table grows. By default a table is vacuumed once a
+-- fifth of it is dead, which on hundreds of millions of rows means rarely and for hours, so vacuum in small,
+-- frequent steps instead.
+alter table todo set (
+    autovacuum_vacuum_scale_factor = 0.01,
+    autovacuum_analyze_scale_factor = 0.005,
+    -- Every update changes the indexed version, so none are HOT, but room on the page keeps the new row
+    -- next to the user's other rows
+    fillfactor = 90
+);
+
+-- Updated on every todo write, free space on each page lets those be HOT updates
+alter table todo_count set (
+    fillfactor = 50,
+    autovacuum_vacuum_scale_factor = 0.01
+);
+
+alter table todo_deletion set (
+    autovacuum_vacuum_scale_factor = 0.01,
+    autovacuum_analyze_scale_factor = 0.005
+);
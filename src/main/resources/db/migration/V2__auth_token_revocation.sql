@@ -0,0 +1,8 @@
+create table auth_token_revocation (
+    id bigserial primary key,
+    login_id bigint,
+    user_id bigint,
+    revoked_on timestamp not null
+);
+
+create index auth_token_revocation_revoked_on_idx on auth_token_revocation (revoked_on);
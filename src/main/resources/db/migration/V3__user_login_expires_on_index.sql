@@ -0,0 +1 @@
+create index user_login_expires_on_idx on user_login (expires_on);
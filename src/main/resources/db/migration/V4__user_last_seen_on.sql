@@ -0,0 +1 @@
+alter table "user" add column last_seen_on timestamp;
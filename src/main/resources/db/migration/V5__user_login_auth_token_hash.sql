@@ -0,0 +1,10 @@
+-- Replaces user_login.auth_token with its SHA-256 digest, existing sessions keep working. Postgres 9.4 has no
+-- built-in SHA-256, so this needs pgcrypto. Creating it takes a superuser where the migration user is not one,
+-- docker/database/initdb/init.sql creates it for the compose database.
+create extension if not exists pgcrypto;
+
+alter table user_login add column auth_token_hash bytea;
+update user_login set auth_token_hash = digest(auth_token, 'sha256');
+alter table user_login alter column auth_token_hash set not null;
+alter table user_login drop column auth_token;
+alter table user_login add constraint user_login_auth_token_hash_key unique (auth_token_hash);
@@ -0,0 +1,2 @@
+create index todo_created_on_id_idx on todo (created_on, id);
+create index todo_user_id_created_on_id_idx on todo (user_id, created_on, id);
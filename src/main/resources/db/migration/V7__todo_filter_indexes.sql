@@ -0,0 +1,2 @@
+create index todo_user_id_status_created_on_id_idx on todo (user_id, status, created_on, id);
+create index todo_user_id_priority_created_on_id_idx on todo (user_id, priority, created_on, id);
@@ -0,0 +1,21 @@
+-- Kept up to date by a trigger, generated columns need Postgres 12
+alter table todo add column search_vector tsvector;
+
+create function todo_search_vector(title text, description text) returns tsvector as $$
+    select setweight(to_tsvector('pg_catalog.english', coalesce(title, '')), 'A') ||
+           setweight(to_tsvector('pg_catalog.english', coalesce(description, '')), 'B');
+$$ language sql immutable;
+
+create function todo_search_vector_update() returns trigger as $$
+begin
+    new.search_vector := todo_search_vector(new.title, new.description);
+    return new;
+end
+$$ language plpgsql;
+
+create trigger todo_search_vector_update before insert or update of title, description on todo
+    for each row execute procedure todo_search_vector_update();
+
+update todo set search_vector = todo_search_vector(title, description);
+
+create index todo_search_vector_idx on todo using gin (search_vector);
@@ -0,0 +1,19 @@
+-- One sequence for all todos, so the highest version of a user's todos changes with any insert or update
+create sequence todo_version_seq;
+
+alter table todo add column version bigint;
+update todo set version = nextval('todo_version_seq');
+alter table todo alter column version set default nextval('todo_version_seq');
+alter table todo alter column version set not null;
+
+create function todo_version_update() returns trigger as $$
+begin
+    new.version := nextval('todo_version_seq');
+    return new;
+end
+$$ language plpgsql;
+
+create trigger todo_version_update before update on todo
+    for each row when (old.* is distinct from new.*) execute procedure todo_version_update();
+
+create index todo_user_id_version_idx on todo (user_id, version);
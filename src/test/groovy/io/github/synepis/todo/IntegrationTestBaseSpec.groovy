@@ -11,7 +11,7 @@ abstract class IntegrationTestBaseSpec extends Specification {
 
     // Runs before every integration test, giving us a clean slate
     def cleanup() {
-        def tables = [ 'public."user"', 'todo' ]
+        def tables = [ 'public."user"', 'todo', 'todo_deletion' ]
 
         tables.forEach { jdbcTemplate.execute("TRUNCATE " + it + " CASCADE") }
     }
@@ -0,0 +1,282 @@
+package io.github.synepis.todo
+
+import groovy.json.JsonSlurper
+import io.github.synepis.todo.login.UserLogin
+import io.github.synepis.todo.login.UserLoginRepository
+import io.github.synepis.todo.todo.Todo
+import io.github.synepis.todo.todo.TodoCursor
+import io.github.synepis.todo.todo.TodoFilter
+import io.github.synepis.todo.todo.TodoPatch
+import io.github.synepis.todo.todo.TodoPriority
+import io.github.synepis.todo.todo.TodoRepository
+import io.github.synepis.todo.todo.TodoSearchCursor
+import io.github.synepis.todo.todo.TodoSortKey
+import io.github.synepis.todo.todo.TodoStatus
+import io.github.synepis.todo.user.User
+import io.github.synepis.todo.user.UserActivity
+import io.github.synepis.todo.user.UserRepository
+import io.github.synepis.todo.user.UserRole
+import io.github.synepis.todo.utils.RecordingJdbcTemplate
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate
+import org.springframework.jdbc.datasource.DataSourceTransactionManager
+import org.springframework.transaction.support.TransactionTemplate
+
+import javax.sql.DataSource
+import java.lang.reflect.Modifier
+import java.time.Instant
+
+/**
+ * Explains every statement of the repositories against realistic volumes and fails on sequential scans, or
+ * on plans costlier than the budget recorded for them in query-plan-budgets.properties. Statements that read
+ * a whole table by design are recorded as "scan". A new repository method fails here until it is added to
+ * this suite and given a budget, the failure reports the cost to record.
+ *
+ * Statements scoped to a user must also read no more todo rows than the user has, which is what keeps them
+ * flat as the table grows, the way a partition per user would.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class QueryPlanIntSpec extends IntegrationTestBaseSpec {
+
+    private static final int USERS = 1000
+    private static final int TODOS_PER_USER = 100
+    private static final int LOGINS_PER_USER = 3
+
+    @Autowired
+    private DataSource dataSource
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate
+
+    private Properties budgets = new Properties()
+    private RecordingJdbcTemplate recorder
+    private TransactionTemplate transactionTemplate
+
+    private long userId
+    private long lonelyUserId
+    private long todoId
+    private long loginId
+
+    def setup() {
+        getClass().getResourceAsStream("/query-plan-budgets.properties").withCloseable { budgets.load(it) }
+        recorder = new RecordingJdbcTemplate(dataSource)
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource))
+        seed()
+    }
+
+    def "TodoRepository: every statement is served by indexes, within its budget"() {
+        given:
+        def todoRepository = new TodoRepository(recorder)
+        def todo = aTodo().withId(todoId)
+
+        expect:
+        violations(TodoRepository, [
+                count                  : { todoRepository.count() },
+                approximateCount       : { todoRepository.approximateCount() },
+                findById               : { todoRepository.findById(todoId) },
+                findByIdAndUserId      : { todoRepository.findByIdAndUserId(todoId, userId) },
+                findAll                : { todoRepository.findAll() },
+                forEach                : { todoRepository.forEach { } },
+                findListVersionByUserId: { todoRepository.findListVersionByUserId(userId) },
+                findByUserIdSince      : { todoRepository.findByUserIdSince(userId, 0, 100) },
+                findByUserId           : { todoRepository.findByUserId(userId) },
+                findPage               : { todoRepository.findPage(new TodoCursor(Instant.parse("2019-03-02T00:00:00Z"), 0), 100) },
+                findPageByUserId       : {
+                    todoRepository.findPageByUserId(
+                            userId, TodoFilter.builder().statuses([TodoStatus.DONE] as Set).build(), null, 100)
+                },
+                findPageByUserIdByPriority: {
+                    todoRepository.findPageByUserId(
+                            userId, TodoFilter.builder().sort(TodoSortKey.PRIORITY).build(),
+                            new TodoCursor(Instant.parse("2019-03-02T00:00:00Z"), 0, TodoPriority.MEDIUM), 100)
+                },
+                search                 : { todoRepository.search(userId, "todo42", new TodoSearchCursor(1.0f, Long.MAX_VALUE), 100) },
+                insert                 : { todoRepository.insert(aTodo()) },
+                update                 : { todoRepository.update(todo) },
+                insertAll              : { todoRepository.insertAll([aTodo(), aTodo()]) },
+                patch                  : { todoRepository.patch(userId, TodoPatch.builder().id(todoId).title("patched").build()) },
+                patchAll               : { todoRepository.patchAll(userId, [TodoPatch.builder().id(todoId).title("patched").build()]) },
+                deleteAll              : { todoRepository.deleteAll(userId, [todoId]) },
+                updateStatus           : { todoRepository.updateStatus(userId, [TodoStatus.NOT_STARTED] as Set, TodoStatus.DONE) },
+                deleteByIdAndUserId    : { todoRepository.deleteByIdAndUserId(todoId, userId) },
+                delete                 : { todoRepository.delete(todo) },
+        ]) == []
+    }
+
+    def "UserRepository: every statement is served by indexes, within its budget"() {
+        given:
+        def userRepository = new UserRepository(recorder)
+        def user = aUser("someone").withId(userId)
+
+        expect:
+        violations(UserRepository, [
+                count         : { userRepository.count() },
+                findById      : { userRepository.findById(userId) },
+                findByUsername: { userRepository.findByUsername("user42") },
+                findAll       : { userRepository.findAll() },
+                forEach       : { userRepository.forEach { } },
+                insert        : { userRepository.insert(aUser("new")) },
+                update        : { userRepository.update(user) },
+                updateActivity: { userRepository.updateActivity([UserActivity.builder().userId(userId).lastSeenOn(Instant.now()).build()]) },
+                delete        : { userRepository.delete(aUser("lonely").withId(lonelyUserId)) },
+        ]) == []
+    }
+
+    def "UserLoginRepository: every statement is served by indexes, within its budget"() {
+        given:
+        def userLoginRepository = new UserLoginRepository(recorder)
+        def login = aLogin().withId(loginId)
+
+        expect:
+        violations(UserLoginRepository, [
+                count                         : { userLoginRepository.count() },
+                countByUserId                 : { userLoginRepository.countByUserId(userId) },
+                findAll                       : { userLoginRepository.findAll() },
+                forEach                       : { userLoginRepository.forEach { } },
+                findById                      : { userLoginRepository.findById(loginId) },
+                findByIdAndUserId             : { userLoginRepository.findByIdAndUserId(loginId, userId) },
+                findByAllByUserId             : { userLoginRepository.findByAllByUserId(userId) },
+                findByAuthToken               : { userLoginRepository.findByAuthToken("token42") },
+                findPrincipalByAuthToken      : { userLoginRepository.findPrincipalByAuthToken("token42", Instant.now()) },
+                insert                        : { userLoginRepository.insert(aLogin()) },
+                update                        : { userLoginRepository.update(login) },
+                extendExpiry                  : { userLoginRepository.extendExpiry([(loginId): Instant.now().plusSeconds(3600)]) },
+                delete                        : { userLoginRepository.delete(login) },
+                deleteAllForUserIdAndAuthToken: { userLoginRepository.deleteAllForUserIdAndAuthToken(userId, "token42") },
+                deleteExpiredBatch            : { userLoginRepository.deleteExpiredBatch(Instant.now(), 1000) },
+                deleteAllForUserId            : { userLoginRepository.deleteAllForUserId(userId) },
+        ]) == []
+    }
+
+    /**
+     * Runs each call, then explains every statement it made, except for whole-table reads. Nothing is kept,
+     * each statement is rolled back before the next is explained.
+     */
+    private List<String> violations(Class repository, Map<String, Closure> calls) {
+        def violations = []
+
+        def methods = repository.declaredMethods
+                .findAll { Modifier.isPublic(it.modifiers) && !Modifier.isStatic(it.modifiers) }
+                *.name as Set
+        (methods - calls.keySet()).each { violations << repository.simpleName + "." + it + ": not covered" }
+
+        calls.findAll { name, call -> budgets.getProperty(repository.simpleName + "." + name) != "scan" }.each { name, call ->
+            def key = repository.simpleName + "." + name
+            def budget = budgets.getProperty(key)
+            def explained = explain(call)
+            if (explained.isEmpty()) {
+                violations << key + ": no statement recorded"
+            }
+
+            explained.each { statement, plan ->
+                def cost = plan["Total Cost"] as double
+                if (budget == null) {
+                    violations << key + ": no budget recorded, cost " + cost
+                    return
+                }
+                nodes(plan)
+                        .findAll { it["Node Type"] == "Seq Scan" && !it["Relation Name"].startsWith("pg_") }
+                        .each { violations << key + ": sequential scan on " + it["Relation Name"] }
+                if (cost > (budget as double)) {
+                    violations << key + ": cost " + cost + " over budget " + budget
+                }
+                if (statement.params.hasValue("user_id") && todoRowsRead(plan) > TODOS_PER_USER) {
+                    violations << key + ": reads " + todoRowsRead(plan) + " todo rows for one user"
+                }
+            }
+        }
+
+        violations
+    }
+
+    private List<List> explain(Closure call) {
+        transactionTemplate.execute { status ->
+            def beforeCall = status.createSavepoint()
+            call()
+            def statements = recorder.drain()
+            status.rollbackToSavepoint(beforeCall)
+
+            def plans = statements.collect { statement ->
+                def beforeExplain = status.createSavepoint()
+                def json = namedParameterJdbcTemplate.queryForObject(
+                        "explain (analyze, buffers, format json) " + statement.sql, statement.params, String)
+                status.rollbackToSavepoint(beforeExplain)
+                [statement, new JsonSlurper().parseText(json)[0]["Plan"] as Map]
+            }
+            status.setRollbackOnly()
+            plans
+        }
+    }
+
+    private static List<Map> nodes(Map plan) {
+        [plan] + (plan["Plans"] ?: []).collectMany { nodes(it as Map) }
+    }
+
+    /* Rows the scans of todo returned or filtered out, over all their loops */
+    private static long todoRowsRead(Map plan) {
+        nodes(plan)
+                .findAll { it["Node Type"].endsWith("Scan") && it["Relation Name"] == "todo" }
+                .sum(0L) {
+                    ((it["Actual Rows"] ?: 0) + (it["Rows Removed by Filter"] ?: 0) +
+                            (it["Rows Removed by Index Recheck"] ?: 0)) * (it["Actual Loops"] ?: 1)
+                } as long
+    }
+
+    /* Users with todos, tombstones and logins in every status and priority, one without any, with planner statistics */
+    private void seed() {
+        jdbcTemplate.update(
+                "insert into \"user\" (username, password, email, created_on, roles) " +
+                        "select 'user' || i, 'password', 'user' || i || '@email.com', now(), 'ROLE_USER' " +
+                        "from generate_series(1, " + USERS + ") i")
+        jdbcTemplate.update(
+                "insert into todo (user_id, title, created_on, priority, status) " +
+                        "select u.id, 'todo' || i, timestamp '2019-03-01' + i * interval '1 hour', " +
+                        "i % 3, i / 3 % 3 " + // priority and status codes
+                        "from \"user\" u, generate_series(1, " + TODOS_PER_USER + ") i")
+        jdbcTemplate.update("delete from todo where title like '%0'") // every tenth, leaving tombstones
+        jdbcTemplate.update(
+                "insert into user_login (user_id, auth_token_hash, created_on, expires_on) " +
+                        "select u.id, decode(md5('token' || u.id || '-' || i), 'hex'), now(), now() + interval '1 day' " +
+                        "from \"user\" u, generate_series(1, " + LOGINS_PER_USER + ") i")
+        jdbcTemplate.update(
+                "insert into \"user\" (username, password, email, created_on) " +
+                        "values ('lonely', 'password', 'lonely@email.com', now())")
+        ["\"user\"", "todo", "todo_deletion", "user_login", "todo_count"].each { jdbcTemplate.execute("analyze " + it) }
+
+        userId = jdbcTemplate.queryForObject("select id from \"user\" where username = 'user1'", Long)
+        lonelyUserId = jdbcTemplate.queryForObject("select id from \"user\" where username = 'lonely'", Long)
+        todoId = jdbcTemplate.queryForObject("select min(id) from todo where user_id = ?", Long, userId)
+        loginId = jdbcTemplate.queryForObject("select min(id) from user_login where user_id = ?", Long, userId)
+    }
+
+    private Todo aTodo() {
+        Todo.builder()
+                .userId(userId)
+                .title("todo")
+                .description("description")
+                .createdOn(Instant.now())
+                .priority(TodoPriority.MEDIUM)
+                .status(TodoStatus.NOT_STARTED)
+                .build()
+    }
+
+    private static User aUser(String username) {
+        User.builder()
+                .username(username)
+                .email(username + "@email.com")
+                .password("password")
+                .createdOn(Instant.now())
+                .roles([UserRole.ROLE_USER] as Set)
+                .build()
+    }
+
+    private UserLogin aLogin() {
+        UserLogin.builder()
+                .userId(userId)
+                .authToken(UUID.randomUUID().toString())
+                .createdOn(Instant.now())
+                .expiresOn(Instant.now().plusSeconds(3600))
+                .build()
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.synepis.todo.datasource
+
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.web.servlet.HandlerMapping
+import spock.lang.Specification
+
+class ReadYourWritesInterceptorSpec extends Specification {
+
+    private def readYourWrites = Mock(ReadYourWrites)
+    private def interceptor = new ReadYourWritesInterceptor(readYourWrites)
+    private def response = new MockHttpServletResponse()
+
+    def cleanup() {
+        ReadYourWrites.setCurrentUserId(null)
+    }
+
+    def "a write request pins its user before the handler runs"() {
+        given:
+        def request = aRequest("POST", "7")
+
+        when:
+        interceptor.preHandle(request, response, null)
+
+        then:
+        1 * readYourWrites.recordWrite(7)
+        ReadYourWrites.currentUserId() == 7
+
+        when:
+        interceptor.afterCompletion(request, response, null, null)
+
+        then:
+        0 * readYourWrites._
+        ReadYourWrites.currentUserId() == null
+    }
+
+    def "a read request does not pin its user"() {
+        when:
+        interceptor.preHandle(aRequest("GET", "7"), response, null)
+
+        then:
+        0 * readYourWrites._
+        ReadYourWrites.currentUserId() == 7
+    }
+
+    private static MockHttpServletRequest aRequest(String method, String userId) {
+        def request = new MockHttpServletRequest(method, "/users/" + userId + "/todos")
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, [userId: userId])
+        request
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.synepis.todo.datasource
+
+import com.zaxxer.hikari.HikariDataSource
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import spock.lang.Specification
+
+import java.time.Clock
+
+class ReplicaRoutingDataSourceSpec extends Specification {
+
+    private def clock = Mock(Clock)
+    private def meterRegistry = new SimpleMeterRegistry()
+    private def now = 1_000_000L
+    private ReadYourWrites readYourWrites
+    private ReplicaRoutingDataSource dataSource
+
+    def setup() {
+        clock.millis() >> { now }
+        /* pinned for 10s after a write; replicas may lag by up to 5s */
+        readYourWrites = new ReadYourWrites(clock, 10_000, 100)
+        def replicas = new LinkedHashMap<String, HikariDataSource>()
+        replicas.put("replica-1", Mock(HikariDataSource))
+        replicas.put("replica-2", Mock(HikariDataSource))
+        dataSource = new ReplicaRoutingDataSource(Mock(HikariDataSource), replicas, readYourWrites, meterRegistry, 5_000)
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true)
+    }
+
+    def cleanup() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false)
+        ReadYourWrites.setCurrentUserId(null)
+    }
+
+    def "only read-only transactions go to a replica"() {
+        given:
+        caughtUp()
+
+        when:
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false)
+
+        then:
+        dataSource.determineCurrentLookupKey() == ReplicaRoutingDataSource.PRIMARY
+
+        when:
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true)
+
+        then:
+        dataSource.determineCurrentLookupKey() != ReplicaRoutingDataSource.PRIMARY
+    }
+
+    def "reads for the same user stick to the same replica"() {
+        given:
+        caughtUp()
+        ReadYourWrites.setCurrentUserId(1)
+
+        expect:
+        (1..10).collect { dataSource.determineCurrentLookupKey() }.unique() == ["replica-2"]
+    }
+
+    def "falls back to the primary while no replica is within the allowed lag"() {
+        expect: "before the first check"
+        dataSource.determineCurrentLookupKey() == ReplicaRoutingDataSource.PRIMARY
+
+        when:
+        dataSource.updateLag("replica-1", 5_001)
+        dataSource.updateLag("replica-2", null)
+
+        then:
+        dataSource.determineCurrentLookupKey() == ReplicaRoutingDataSource.PRIMARY
+
+        when:
+        dataSource.updateLag("replica-1", 4_000)
+
+        then:
+        (1..4).collect { dataSource.determineCurrentLookupKey() }.unique() == ["replica-1"]
+        meterRegistry.get("datasource.replica.fallbacks").counter().count() == 2
+    }
+
+    def "a user's reads go to the primary for a while after they wrote"() {
+        given:
+        caughtUp()
+        ReadYourWrites.setCurrentUserId(1)
+
+        when:
+        readYourWrites.recordWrite(1)
+
+        then:
+        dataSource.determineCurrentLookupKey() == ReplicaRoutingDataSource.PRIMARY
+
+        when:
+        now += 10_000
+
+        then:
+        dataSource.determineCurrentLookupKey() != ReplicaRoutingDataSource.PRIMARY
+    }
+
+    def "every user's reads go to the primary for a while after writes may have been missed"() {
+        given:
+        caughtUp()
+        ReadYourWrites.setCurrentUserId(1)
+
+        when: "writes may have been missed"
+        readYourWrites.recordWriteForAll()
+
+        then:
+        dataSource.determineCurrentLookupKey() == ReplicaRoutingDataSource.PRIMARY
+
+        when:
+        now += 10_000
+
+        then:
+        dataSource.determineCurrentLookupKey() != ReplicaRoutingDataSource.PRIMARY
+    }
+
+    private void caughtUp() {
+        dataSource.updateLag("replica-1", 0)
+        dataSource.updateLag("replica-2", 0)
+    }
+}
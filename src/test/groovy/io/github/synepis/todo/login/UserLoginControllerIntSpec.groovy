@@ -167,6 +167,22 @@ class UserLoginControllerIntSpec extends IntegrationTestBaseSpec {
         response.body.userMessages == ["Bad credentials were provided"]
     }
 
+    def "createLogin(): given a wrong password for an existing user returns an authentication error"() {
+        given:
+        def user = testUserFactory.aUser()
+        def credentials = new CreateLoginRequest(user.username, "wrong" + user.username + "password")
+
+        when:
+        def response = testRestTemplate.exchange(
+                "/logins", HttpMethod.POST, new HttpEntity<>(credentials), ApiError.class)
+
+        then:
+        response.statusCode == HttpStatus.UNAUTHORIZED
+        response.body.status == HttpStatus.UNAUTHORIZED.name()
+        response.body.userMessages == ["Bad credentials were provided"]
+        userLoginRepository.findAll().count { it.userId == user.id } == 0
+    }
+
     def "createLogin(): given empty credentials returns a validation error"() {
         given:
         def emptyCredentials = new CreateLoginRequest("", "")
@@ -251,7 +267,7 @@ class UserLoginControllerIntSpec extends IntegrationTestBaseSpec {
 
         then:
         adminResponse.statusCode == HttpStatus.OK
-        userLoginRepository.findAll().count { it.userId == user.id && it.authToken == userLogin1.authToken } == 1
+        userLoginRepository.findAll().count { it.userId == user.id && it.id == userLogin1.id } == 1
 
         and:
         def ownerUser = user
@@ -266,7 +282,7 @@ class UserLoginControllerIntSpec extends IntegrationTestBaseSpec {
 
         then:
         ownerResponse.statusCode == HttpStatus.OK
-        userLoginRepository.findAll().count { it.userId == user.id && it.authToken == userLogin1.authToken } == 1
+        userLoginRepository.findAll().count { it.userId == user.id && it.id == userLogin1.id } == 1
 
         and:
         def otherUser = testUserFactory.aUser()
@@ -281,6 +297,6 @@ class UserLoginControllerIntSpec extends IntegrationTestBaseSpec {
 
         then:
         nonAdminResponse.statusCode == HttpStatus.FORBIDDEN
-        userLoginRepository.findAll().count { it.userId == user.id && it.authToken == userLogin1.authToken } == 1
+        userLoginRepository.findAll().count { it.userId == user.id && it.id == userLogin1.id } == 1
     }
 }
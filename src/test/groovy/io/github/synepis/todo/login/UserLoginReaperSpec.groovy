@@ -0,0 +1,40 @@
+package io.github.synepis.todo.login
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.time.Clock
+import java.time.Instant
+
+class UserLoginReaperSpec extends Specification {
+
+    private def clock = Mock(Clock)
+    private def userLoginRepository = Mock(UserLoginRepository)
+    private def meterRegistry = new SimpleMeterRegistry()
+    private def reaper = new UserLoginReaper(clock, userLoginRepository, meterRegistry, 10, 3)
+
+    def "deletes batches until a partial batch is deleted and reports what was reclaimed"() {
+        given:
+        def now = Instant.now()
+
+        when:
+        reaper.reap()
+
+        then:
+        1 * clock.instant() >> now
+        2 * userLoginRepository.deleteExpiredBatch(now, 10) >> 10
+        1 * userLoginRepository.deleteExpiredBatch(now, 10) >> 4
+        meterRegistry.counter("user_login.reaper.reclaimed").count() == 24
+        meterRegistry.timer("user_login.reaper.duration").count() == 1
+    }
+
+    def "stops after the maximum number of batches per run"() {
+        when:
+        reaper.reap()
+
+        then:
+        1 * clock.instant() >> Instant.now()
+        3 * userLoginRepository.deleteExpiredBatch(_, 10) >> 10
+        meterRegistry.counter("user_login.reaper.reclaimed").count() == 30
+    }
+}
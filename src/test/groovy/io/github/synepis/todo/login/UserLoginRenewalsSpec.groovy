@@ -0,0 +1,72 @@
+package io.github.synepis.todo.login
+
+import io.github.synepis.todo.user.UserRole
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.time.Instant
+
+class UserLoginRenewalsSpec extends Specification {
+
+    private def userLoginRepository = Mock(UserLoginRepository)
+
+    /* 600s lifetime, renewed at most once a minute, sessions capped at an hour, 2 pending logins written 1 per batch */
+    private def renewals = new UserLoginRenewals(userLoginRepository, new SimpleMeterRegistry(), 600, 60, 3600, 2, 1)
+
+    private def now = Instant.parse("2019-01-01T12:00:00Z")
+
+    def "renews logins to a full lifetime at most once per renewal window"() {
+        expect:
+        renewals.renewIfDue(aPrincipal(1, now.minusSeconds(createdAgo), now.plusSeconds(expiresIn)), now) == renewed
+
+        where:
+        createdAgo | expiresIn | renewed
+        0          | 600       | Optional.empty()
+        59         | 541       | Optional.empty()
+        60         | 540       | Optional.of(Instant.parse("2019-01-01T12:10:00Z"))
+        500        | 100       | Optional.of(Instant.parse("2019-01-01T12:10:00Z"))
+    }
+
+    def "never renews past the maximum session lifetime"() {
+        expect:
+        renewals.renewIfDue(aPrincipal(1, now.minusSeconds(3300), now.plusSeconds(60)), now) ==
+                Optional.of(now.plusSeconds(300))
+        renewals.renewIfDue(aPrincipal(1, now.minusSeconds(3540), now.plusSeconds(60)), now) ==
+                Optional.empty()
+    }
+
+    def "buffers renewals and writes them in batches on flush"() {
+        given:
+        renewals.renewIfDue(aPrincipal(1, now.minusSeconds(300), now.plusSeconds(300)), now)
+        renewals.renewIfDue(aPrincipal(2, now.minusSeconds(300), now.plusSeconds(300)), now)
+
+        when:
+        renewals.flush()
+        renewals.flush()
+
+        then:
+        1 * userLoginRepository.extendExpiry({ it == [(1L): now.plusSeconds(600)] })
+        1 * userLoginRepository.extendExpiry({ it == [(2L): now.plusSeconds(600)] })
+        0 * userLoginRepository._
+    }
+
+    def "skips renewals for new logins once the buffer is full"() {
+        given:
+        renewals.renewIfDue(aPrincipal(1, now.minusSeconds(300), now.plusSeconds(300)), now)
+        renewals.renewIfDue(aPrincipal(2, now.minusSeconds(300), now.plusSeconds(300)), now)
+
+        expect:
+        !renewals.renewIfDue(aPrincipal(3, now.minusSeconds(300), now.plusSeconds(300)), now).isPresent()
+        renewals.renewIfDue(aPrincipal(1, now.minusSeconds(300), now.plusSeconds(300)), now.plusSeconds(1)).isPresent()
+    }
+
+    private static LoginPrincipal aPrincipal(long loginId, Instant createdOn, Instant expiresOn) {
+        LoginPrincipal.builder()
+                .loginId(loginId)
+                .userId(1)
+                .roles(Set.of(UserRole.ROLE_USER))
+                .createdOn(createdOn)
+                .expiresOn(expiresOn)
+                .build()
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.synepis.todo.login
+
+import io.github.synepis.todo.IntegrationTestBaseSpec
+import io.github.synepis.todo.user.User
+import io.github.synepis.todo.user.UserRepository
+import io.github.synepis.todo.user.UserRole
+import io.github.synepis.todo.utils.TestUserFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate
+
+import java.security.MessageDigest
+import java.time.Instant
+import java.time.temporal.ChronoUnit
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UserLoginRepositoryIntSpec extends IntegrationTestBaseSpec {
+
+    @Autowired
+    private UserLoginRepository userLoginRepository
+
+    @Autowired
+    private UserRepository userRepository
+
+    @Autowired
+    private TestUserFactory testUserFactory
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate
+
+    def "findPrincipalByAuthToken(): resolves the login's user and roles"() {
+        given:
+        def user = testUserFactory.anAdminUser()
+        def now = Instant.now()
+        def login = userLoginRepository.insert(aLogin(user, "token1", now, now.plusSeconds(60)))
+
+        when:
+        def principal = userLoginRepository.findPrincipalByAuthToken("token1", now)
+
+        then:
+        principal.isPresent()
+        principal.get().loginId == login.id
+        principal.get().userId == user.id
+        principal.get().roles == Set.of(UserRole.ROLE_USER, UserRole.ROLE_ADMIN)
+        principal.get().expiresOn == login.expiresOn
+    }
+
+    def "findPrincipalByAuthToken(): ignores unknown and expired tokens"() {
+        given:
+        def user = testUserFactory.aUser()
+        def now = Instant.now()
+        userLoginRepository.insert(aLogin(user, "token1", now, now.plusSeconds(60)))
+
+        expect:
+        !userLoginRepository.findPrincipalByAuthToken("unknown", now).isPresent()
+        !userLoginRepository.findPrincipalByAuthToken("token1", now.plusSeconds(60)).isPresent()
+    }
+
+    def "countByUserId(): counts only the user's logins"() {
+        given:
+        def user = testUserFactory.aUser()
+        def other = testUserFactory.aUser()
+        def now = Instant.now()
+        userLoginRepository.insert(aLogin(user, "token1", now, now.plusSeconds(60)))
+        userLoginRepository.insert(aLogin(user, "token2", now, now.plusSeconds(60)))
+        userLoginRepository.insert(aLogin(other, "token3", now, now.plusSeconds(60)))
+
+        expect:
+        userLoginRepository.countByUserId(user.id) == 2
+        userLoginRepository.countByUserId(other.id) == 1
+    }
+
+    def "deleteExpiredBatch(): deletes only expired logins, at most a batch at a time"() {
+        given:
+        def user = testUserFactory.aUser()
+        def now = Instant.now()
+        (1..3).each { userLoginRepository.insert(aLogin(user, "expired" + it, now.minusSeconds(120), now.minusSeconds(60))) }
+        def active = userLoginRepository.insert(aLogin(user, "active", now, now.plusSeconds(60)))
+
+        when:
+        def firstBatch = userLoginRepository.deleteExpiredBatch(now, 2)
+        def secondBatch = userLoginRepository.deleteExpiredBatch(now, 2)
+
+        then:
+        firstBatch == 2
+        secondBatch == 1
+        userLoginRepository.findAll()*.id == [active.id]
+    }
+
+    def "extendExpiry(): extends several logins at once, never shortening them"() {
+        given:
+        def user = testUserFactory.aUser()
+        def now = Instant.now().truncatedTo(ChronoUnit.MILLIS)
+        def login1 = userLoginRepository.insert(aLogin(user, "token1", now, now.plusSeconds(60)))
+        def login2 = userLoginRepository.insert(aLogin(user, "token2", now, now.plusSeconds(600)))
+
+        when:
+        def updated = userLoginRepository.extendExpiry([(login1.id): now.plusSeconds(300), (login2.id): now.plusSeconds(300)])
+
+        then:
+        updated == 2
+        userLoginRepository.findById(login1.id).get().expiresOn == now.plusSeconds(300)
+        userLoginRepository.findById(login2.id).get().expiresOn == now.plusSeconds(600)
+    }
+
+    def "insert(): stores only a digest of the token, which lookups hash in turn"() {
+        given:
+        def user = testUserFactory.aUser()
+        def now = Instant.now()
+
+        when:
+        def login = userLoginRepository.insert(aLogin(user, "token1", now, now.plusSeconds(60)))
+        def stored = jdbcTemplate.queryForList("select * from user_login where id = :id", [id: login.id])[0]
+
+        then:
+        login.authToken == "token1"
+        !stored.containsKey("auth_token")
+        stored.auth_token_hash == MessageDigest.getInstance("SHA-256").digest("token1".bytes)
+        userLoginRepository.findByAuthToken("token1").get().id == login.id
+        userLoginRepository.findByAuthToken("token1").get().authToken == null
+        userLoginRepository.deleteAllForUserIdAndAuthToken(user.id, "token1") == 1
+    }
+
+    def "findPrincipalByAuthToken(): resolves the same roles as looking up the login and then its user"() {
+        given:
+        def now = Instant.now()
+        def tokens = [testUserFactory.aUser(), testUserFactory.anAdminUser()].collect { user ->
+            userLoginRepository.insert(aLogin(user, UUID.randomUUID().toString(), now, now.plusSeconds(600))).authToken
+        }
+
+        expect:
+        tokens.every { token ->
+            def login = userLoginRepository.findByAuthToken(token).get()
+            userLoginRepository.findPrincipalByAuthToken(token, now).get().roles ==
+                    userRepository.findById(login.userId).get().roles
+        }
+    }
+
+    private static UserLogin aLogin(User user, String token, Instant createdOn, Instant expiresOn) {
+        UserLogin.builder()
+                .userId(user.id)
+                .authToken(token)
+                .createdOn(createdOn)
+                .expiresOn(expiresOn)
+                .build()
+    }
+}
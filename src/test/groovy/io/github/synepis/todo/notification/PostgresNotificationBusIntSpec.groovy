@@ -0,0 +1,56 @@
+package io.github.synepis.todo.notification
+
+import io.github.synepis.todo.IntegrationTestBaseSpec
+import io.github.synepis.todo.login.UserLoginRepository
+import io.github.synepis.todo.utils.LoginUtils
+import io.github.synepis.todo.utils.TestUserFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import spock.util.concurrent.PollingConditions
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PostgresNotificationBusIntSpec extends IntegrationTestBaseSpec {
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @Autowired
+    private TestUserFactory testUserFactory
+
+    @Autowired
+    private LoginUtils loginUtils
+
+    @Autowired
+    private UserLoginRepository userLoginRepository
+
+    @Autowired
+    private PostgresNotificationBus notificationBus
+
+    def "a revocation sent while the listener was disconnected takes effect once it is back"() {
+        given:
+        def user = testUserFactory.aUser()
+        def login = loginUtils.doLogin(user)
+        def headers = new HttpHeaders(Map.of("x-auth-token", login.authToken))
+        def url = "/users/" + user.id + "/logins"
+
+        expect: "the token is cached"
+        testRestTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(null, headers), String).statusCode == HttpStatus.OK
+
+        when: "another node logs the user out while the listener connection is down"
+        jdbcTemplate.queryForList(
+                "select pg_terminate_backend(pid) from pg_stat_activity where query like 'listen %' and pid <> pg_backend_pid()")
+        userLoginRepository.deleteAllForUserId(user.id)
+        notificationBus.publish("auth_token_invalidation", "user:" + user.id)
+
+        then:
+        new PollingConditions(timeout: 15).eventually {
+            assert testRestTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(null, headers), String)
+                    .statusCode == HttpStatus.UNAUTHORIZED
+        }
+    }
+}
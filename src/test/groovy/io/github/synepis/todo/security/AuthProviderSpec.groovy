@@ -1,10 +1,13 @@
 package io.github.synepis.todo.security
 
+import io.github.synepis.todo.login.LoginPrincipal
 import io.github.synepis.todo.login.UserLogin
+import io.github.synepis.todo.login.UserLoginRenewals
 import io.github.synepis.todo.login.UserLoginRepository
-import io.github.synepis.todo.user.User
-import io.github.synepis.todo.user.UserRepository
+import io.github.synepis.todo.notification.PostgresNotificationBus
+import io.github.synepis.todo.user.UserActivityRecorder
 import io.github.synepis.todo.user.UserRole
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
 import org.springframework.security.authentication.BadCredentialsException
 import spock.lang.Specification
 
@@ -15,42 +18,41 @@ class AuthProviderSpec extends Specification {
 
     private AuthProvider authProvider
     private def clock = Mock(Clock)
-    private def userRepository = Mock(UserRepository)
     private def userLoginRepository = Mock(UserLoginRepository)
+    private def authTokenCache = new AuthTokenCache(Mock(PostgresNotificationBus), new SimpleMeterRegistry(), 100)
+    private def signedAuthTokens = new SignedAuthTokens(AuthTokenMode.SIGNED, SIGNING_KEY)
+    private def authTokenRevocations = Mock(AuthTokenRevocations)
+    private def userActivityRecorder = Mock(UserActivityRecorder)
+    private def userLoginRenewals = Mock(UserLoginRenewals)
+
+    private static final String SIGNING_KEY = Base64.encoder.encodeToString(("k" * 32).bytes)
 
     def setup() {
-        authProvider = new AuthProvider(clock, userRepository, userLoginRepository)
+        authProvider = new AuthProvider(clock, userLoginRepository, authTokenCache, signedAuthTokens, authTokenRevocations, userActivityRecorder, userLoginRenewals)
+        userLoginRenewals.renewIfDue(_, _) >> Optional.empty()
     }
 
     def "given a valid token returns a valid authentication"() {
         given:
         def tokenContainer = new AuthTokenContainer("token-value")
-        def createdOn = Instant.now()
-        def expiresOn = createdOn.plusSeconds(10)
-        def userLogin = new UserLogin(1, 1, "token-value", createdOn, expiresOn)
-        def user = User.builder()
-                .id(1)
-                .username("user1")
-                .password("password1")
-                .email("user1@email.com")
-                .createdOn(Instant.now())
-                .lastLoginOn(Instant.now())
-                .roles(Set.of(UserRole.ROLE_USER, UserRole.ROLE_ADMIN))
-                .build()
+        def now = Instant.now()
+        def principal = aPrincipal(now.plusSeconds(10), Set.of(UserRole.ROLE_USER, UserRole.ROLE_ADMIN))
+
         when:
         def authentication = authProvider.authenticate(tokenContainer)
 
         then:
-        1 * userLoginRepository.findByAuthToken(tokenContainer.token) >> Optional.of(userLogin)
-        1 * clock.instant() >> createdOn
-        1 * userRepository.findById(userLogin.userId) >> Optional.of(user)
+        1 * clock.instant() >> now
+        1 * userLoginRepository.findPrincipalByAuthToken(tokenContainer.token, now) >> Optional.of(principal)
+        1 * userActivityRecorder.recordSeen(principal.userId, now)
         authentication.authenticated
+        authentication.userId == principal.userId
         authentication.authorities.size() == 2
         authentication.authorities.count { it.getAuthority() == UserRole.ROLE_ADMIN.name() } == 1
         authentication.authorities.count { it.getAuthority() == UserRole.ROLE_USER.name() } == 1
     }
 
-    def "given a unrecognized token throw exception"() {
+    def "given a unrecognized, expired or orphaned token throw exception"() {
         given:
         def tokenContainer = new AuthTokenContainer(null)
 
@@ -58,41 +60,113 @@ class AuthProviderSpec extends Specification {
         authProvider.authenticate(tokenContainer)
 
         then:
-        1 * userLoginRepository.findByAuthToken(tokenContainer.token) >> Optional.empty()
+        1 * userLoginRepository.findPrincipalByAuthToken(tokenContainer.token, _) >> Optional.empty()
         thrown BadCredentialsException
     }
 
-    def "given an expired token throw exception"() {
+    def "repeat authentications with the same token are served from the cache"() {
         given:
-        def tokenContainer = new AuthTokenContainer("token-value")
-        def createdOn = Instant.now()
-        def expiresOn = createdOn.plusSeconds(10)
-        def userLogin = new UserLogin(1, 1, "token-value", createdOn, expiresOn)
+        def now = Instant.now()
+        def principal = aPrincipal(now.plusSeconds(10), Set.of(UserRole.ROLE_USER))
 
         when:
-        authProvider.authenticate(tokenContainer)
+        def first = authProvider.authenticate(new AuthTokenContainer("token-value"))
+        def second = authProvider.authenticate(new AuthTokenContainer("token-value"))
+
+        then:
+        2 * clock.instant() >> now
+        1 * userLoginRepository.findPrincipalByAuthToken("token-value", now) >> Optional.of(principal)
+        2 * userActivityRecorder.recordSeen(principal.userId, now)
+        first.userId == second.userId
+        second.authenticated
+    }
+
+    def "cached tokens are not served once expired or revoked"() {
+        given:
+        def now = Instant.now()
+        def principal = aPrincipal(now.plusSeconds(10), Set.of(UserRole.ROLE_USER))
+
+        when:
+        authProvider.authenticate(new AuthTokenContainer("token-value"))
+        authTokenCache.invalidateUser(principal.userId)
+        authProvider.authenticate(new AuthTokenContainer("token-value"))
+
+        then:
+        2 * clock.instant() >> now
+        2 * userLoginRepository.findPrincipalByAuthToken("token-value", now) >> Optional.of(principal)
+
+        when:
+        authProvider.authenticate(new AuthTokenContainer("token-value"))
 
         then:
-        1 * userLoginRepository.findByAuthToken(tokenContainer.token) >> Optional.of(userLogin)
-        1 * clock.instant() >> expiresOn.plusSeconds(1)
+        1 * clock.instant() >> principal.expiresOn
+        1 * userLoginRepository.findPrincipalByAuthToken("token-value", principal.expiresOn) >> Optional.empty()
         thrown BadCredentialsException
     }
 
-    def "given a token with no corresponding user throw exception"() {
+    def "tokens in active use are renewed and stay cached until their new expiry"() {
         given:
-        def tokenContainer = new AuthTokenContainer("token-value")
-        def createdOn = Instant.now()
-        def expiresOn = createdOn.plusSeconds(10)
-        def userLogin = new UserLogin(1, 1, "token-value", createdOn, expiresOn)
+        def now = Instant.now()
+        def principal = aPrincipal(now.plusSeconds(10), Set.of(UserRole.ROLE_USER))
 
         when:
-        authProvider.authenticate(tokenContainer)
+        authProvider.authenticate(new AuthTokenContainer("token-value"))
+
+        then:
+        1 * clock.instant() >> now
+        1 * userLoginRepository.findPrincipalByAuthToken("token-value", now) >> Optional.of(principal)
+        1 * userLoginRenewals.renewIfDue(principal, now) >> Optional.of(now.plusSeconds(600))
+
+        when:
+        def authentication = authProvider.authenticate(new AuthTokenContainer("token-value"))
 
         then:
-        1 * userLoginRepository.findByAuthToken(tokenContainer.token) >> Optional.of(userLogin)
-        1 * clock.instant() >> createdOn
-        1 * userRepository.findById(userLogin.userId) >> Optional.empty()
+        1 * clock.instant() >> now.plusSeconds(20)
+        1 * userLoginRenewals.renewIfDue({ it.expiresOn == now.plusSeconds(600) }, now.plusSeconds(20)) >> Optional.empty()
+        0 * userLoginRepository._
+        authentication.authenticated
+    }
+
+    def "signed tokens are verified without a database lookup"() {
+        given:
+        def now = Instant.now()
+        def login = new UserLogin(7, 1, "opaque-token", now, now.plusSeconds(10))
+        def token = signedAuthTokens.issue(login, Set.of(UserRole.ROLE_USER, UserRole.ROLE_ADMIN))
+
+        when:
+        def authentication = authProvider.authenticate(new AuthTokenContainer(token))
+
+        then:
+        1 * clock.instant() >> now
+        1 * authTokenRevocations.isRevoked({ it.loginId == 7 && it.userId == 1 }) >> false
+        0 * userLoginRepository._
+        0 * userLoginRenewals._
+        1 * userActivityRecorder.recordSeen(1, now)
+        authentication.authenticated
+        authentication.userId == 1
+        authentication.authorities.size() == 2
+    }
+
+    def "signed tokens are rejected when expired or revoked"() {
+        given:
+        def now = Instant.now()
+        def login = new UserLogin(7, 1, "opaque-token", now, now.plusSeconds(10))
+        def token = signedAuthTokens.issue(login, Set.of(UserRole.ROLE_USER))
+
+        when:
+        authProvider.authenticate(new AuthTokenContainer(token))
+
+        then:
+        1 * clock.instant() >> instant
+        _ * authTokenRevocations.isRevoked(_) >> revoked
+        0 * userLoginRepository._
+        0 * userActivityRecorder._
         thrown BadCredentialsException
+
+        where:
+        instant                         | revoked
+        Instant.now().plusSeconds(3600) | false
+        Instant.now()                   | true
     }
 
     def "supports AuthTokenContainer class"() {
@@ -104,4 +178,14 @@ class AuthProviderSpec extends Specification {
         supportsAuthTokenContainer
         !supportOtherTypes
     }
+
+    def aPrincipal(Instant expiresOn, Set<UserRole> roles) {
+        LoginPrincipal.builder()
+                .loginId(1)
+                .userId(1)
+                .roles(roles)
+                .createdOn(expiresOn.minusSeconds(600))
+                .expiresOn(expiresOn)
+                .build()
+    }
 }
@@ -0,0 +1,32 @@
+package io.github.synepis.todo.security
+
+import io.github.synepis.todo.user.UserRole
+import spock.lang.Specification
+
+class AuthTokenContainerSpec extends Specification {
+
+    def "exposes the given roles as role checks and authorities"() {
+        when:
+        def container = new AuthTokenContainer("token-value", 1, roles)
+
+        then:
+        container.authenticated
+        container.hasRole(UserRole.ROLE_USER) == roles.contains(UserRole.ROLE_USER)
+        container.hasRole(UserRole.ROLE_ADMIN) == roles.contains(UserRole.ROLE_ADMIN)
+        container.authorities*.authority as Set == roles*.name() as Set
+
+        where:
+        roles << [
+                Set.of(),
+                Set.of(UserRole.ROLE_USER),
+                Set.of(UserRole.ROLE_ADMIN),
+                Set.of(UserRole.ROLE_USER, UserRole.ROLE_ADMIN)
+        ]
+    }
+
+    def "containers with the same roles share their authorities"() {
+        expect:
+        new AuthTokenContainer("a", 1, Set.of(UserRole.ROLE_USER)).authorities.is(
+                new AuthTokenContainer("b", 2, EnumSet.of(UserRole.ROLE_USER)).authorities)
+    }
+}
@@ -1,5 +1,7 @@
 package io.github.synepis.todo.security
 
+import io.github.synepis.todo.user.UserRole
+import org.springframework.mock.web.MockHttpServletRequest
 import org.springframework.security.core.context.SecurityContext
 import org.springframework.security.core.context.SecurityContextHolder
 import spock.lang.Specification
@@ -25,60 +27,52 @@ class AuthTokenFilterSpec extends Specification {
         authTokenFilter.doFilterInternal(request, response, filterChain)
 
         then:
-        1 * request.getHeaderNames() >> Collections.enumeration(headers + [tokenHeader])
-        1 * request.getHeader(tokenHeader) >> "token-value"
+        1 * request.getHeader("x-auth-token") >> "token-value"
+        0 * request.getHeaderNames()
         1 * filterChain.doFilter(request, response)
         1 * securityContext.setAuthentication(*_) >> { args ->
             def tokenContainer = (AuthTokenContainer) args[0]
             assert tokenContainer.userId == null
             assert tokenContainer.token == "token-value"
             assert !tokenContainer.authenticated
+            assert !tokenContainer.hasRole(UserRole.ROLE_USER)
+            assert tokenContainer.authorities.isEmpty()
         }
-
-        where:
-        headers                | tokenHeader
-        []                     | "x-auth-token"
-        []                     | "X-aUTh-tOkEN"
-        ["header1", "header2"] | "x-auth-token"
-        ["header1", "header2"] | "X-AUTH-TOKEN"
     }
 
-    def "if multiple token headers are present, the first one is used"() {
+    def "handles empty token"() {
         when:
         authTokenFilter.doFilterInternal(request, response, filterChain)
 
         then:
-        1 * request.getHeaderNames() >> Collections.enumeration(["X-AUTH-TOKEN", "x-auth-token"])
-        1 * request.getHeader("X-AUTH-TOKEN") >> "TOKEN-VALUE"
-        0 * request.getHeader("x-auth-token")
+        1 * request.getHeader("x-auth-token") >> ""
         1 * filterChain.doFilter(request, response)
-        1 * securityContext.setAuthentication(*_) >> { args ->
-            def tokenContainer = (AuthTokenContainer) args[0]
-            assert tokenContainer.userId == null
-            assert tokenContainer.token == "TOKEN-VALUE"
-            assert !tokenContainer.authenticated
-        }
+        0 * securityContext.setAuthentication(*_)
     }
 
-    def "handles empty token"() {
+    def "handles when token is no present"() {
         when:
         authTokenFilter.doFilterInternal(request, response, filterChain)
 
         then:
-        1 * request.getHeaderNames() >> Collections.enumeration(["x-auth-token"])
-        1 * request.getHeader("x-auth-token") >> ""
+        1 * request.getHeader("x-auth-token") >> null
         1 * filterChain.doFilter(request, response)
         0 * securityContext.setAuthentication(*_)
     }
 
-    def "handles when token is no present"() {
+    def "looks the token header up case-insensitively"() {
+        given:
+        def request = new MockHttpServletRequest()
+        request.addHeader(tokenHeader, "token-value")
+        request.addHeader("x-auth-token", "second-value")
+
         when:
         authTokenFilter.doFilterInternal(request, response, filterChain)
 
         then:
-        1 * request.getHeaderNames() >> Collections.enumeration(["header1", "header2"])
-        0 * request.getHeader("x-auth-token")
-        1 * filterChain.doFilter(request, response)
-        0 * securityContext.setAuthentication(*_)
+        1 * securityContext.setAuthentication({ it.token == "token-value" })
+
+        where:
+        tokenHeader << ["x-auth-token", "X-aUTh-tOkEN", "X-AUTH-TOKEN"]
     }
 }
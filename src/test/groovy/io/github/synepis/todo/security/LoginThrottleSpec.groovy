@@ -0,0 +1,109 @@
+package io.github.synepis.todo.security
+
+import io.github.synepis.todo.exception.TooManyRequestsException
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.time.Clock
+
+class LoginThrottleSpec extends Specification {
+
+    private def clock = Mock(Clock)
+    private def meterRegistry = new SimpleMeterRegistry()
+    private def now = 1_000_000L
+
+    /* username: 2 attempts, 1 per second; ip: 3 attempts, 1 per second; lockout after 1 failure, 1s doubling up to 4s */
+    private def loginThrottle = new LoginThrottle(clock, meterRegistry, 100, 2, 60, 3, 60, 1, 1000, 4000)
+
+    def setup() {
+        clock.millis() >> { now }
+    }
+
+    def "rejects attempts for a username once its bucket is empty, until it refills"() {
+        when:
+        loginThrottle.acquire("user", "10.0.0.1")
+        loginThrottle.acquire("user", "10.0.0.2")
+        loginThrottle.acquire("user", "10.0.0.3")
+
+        then:
+        def ex = thrown TooManyRequestsException
+        ex.retryAfter.toMillis() == 1000
+        rejected("username") == 1
+
+        when:
+        now += 1000
+        loginThrottle.acquire("user", "10.0.0.3")
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "rejects attempts from an address once its bucket is empty, whatever the username"() {
+        when:
+        (1..3).each { loginThrottle.acquire("user" + it, "10.0.0.1") }
+        loginThrottle.acquire("user4", "10.0.0.1")
+
+        then:
+        thrown TooManyRequestsException
+        rejected("ip") == 1
+    }
+
+    def "locks an address out of a username for exponentially longer after repeated failures"() {
+        given:
+        def lockouts = []
+
+        when:
+        5.times {
+            try {
+                loginThrottle.acquire("user", "10.0.0.1")
+            } catch (TooManyRequestsException ex) {
+                lockouts << ex.retryAfter.toMillis()
+                now += ex.retryAfter.toMillis()
+                loginThrottle.acquire("user", "10.0.0.1")
+            }
+            loginThrottle.recordFailure("user", "10.0.0.1")
+        }
+
+        then:
+        lockouts == [1000, 2000, 4000]
+        rejected("backoff") == 3
+    }
+
+    def "failures from one address do not lock the username out for others"() {
+        given:
+        loginThrottle.acquire("user", "10.0.0.1")
+        loginThrottle.recordFailure("user", "10.0.0.1")
+        loginThrottle.recordFailure("user", "10.0.0.1")
+
+        when:
+        loginThrottle.acquire("user", "10.0.0.2")
+
+        then:
+        noExceptionThrown()
+
+        when:
+        loginThrottle.acquire("user", "10.0.0.1")
+
+        then:
+        thrown TooManyRequestsException
+        rejected("backoff") == 1
+    }
+
+    def "a successful login lifts the lockout"() {
+        given:
+        loginThrottle.acquire("user", "10.0.0.1")
+        loginThrottle.recordFailure("user", "10.0.0.1")
+        loginThrottle.recordFailure("user", "10.0.0.1")
+
+        when:
+        loginThrottle.recordSuccess("user", "10.0.0.1")
+        loginThrottle.acquire("user", "10.0.0.1")
+
+        then:
+        noExceptionThrown()
+    }
+
+    private double rejected(String limit) {
+        meterRegistry.get("login.throttle.rejected").tag("limit", limit).counter().count()
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.synepis.todo.security
+
+import io.github.synepis.todo.exception.ServiceUnavailableException
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.security.crypto.password.PasswordEncoder
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class PasswordHasherSpec extends Specification {
+
+    private def passwordEncoder = Mock(PasswordEncoder)
+    private def meterRegistry = new SimpleMeterRegistry()
+    private def passwordHasher = new PasswordHasher(passwordEncoder, meterRegistry, 1, 1)
+
+    def cleanup() {
+        passwordHasher.shutdown()
+    }
+
+    def "encodes and verifies passwords off the calling thread"() {
+        given:
+        def callingThread = Thread.currentThread()
+        def hashingThreads = []
+
+        when:
+        def encoded = passwordHasher.encode("password").get(5, TimeUnit.SECONDS)
+        def matches = passwordHasher.matches("password", "hash").get(5, TimeUnit.SECONDS)
+
+        then:
+        1 * passwordEncoder.encode("password") >> { hashingThreads << Thread.currentThread(); "hash" }
+        1 * passwordEncoder.matches("password", "hash") >> { hashingThreads << Thread.currentThread(); true }
+        encoded == "hash"
+        matches
+        hashingThreads.every { it != callingThread && it.name.startsWith("password-hashing-") }
+        meterRegistry.get("password.hashing").tag("operation", "encode").timer().count() == 1
+        meterRegistry.get("password.hashing").tag("operation", "matches").timer().count() == 1
+    }
+
+    def "rejects work once the pool and its queue are full"() {
+        given:
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        passwordEncoder.encode("blocking") >> { started.countDown(); release.await(); "hash" }
+
+        when:
+        def running = passwordHasher.encode("blocking")
+        started.await(5, TimeUnit.SECONDS)
+        def queued = passwordHasher.encode("queued")
+        passwordHasher.encode("rejected")
+
+        then:
+        thrown ServiceUnavailableException
+        meterRegistry.get("password.hashing.rejected").counter().count() == 1
+
+        cleanup:
+        release.countDown()
+        running.get(5, TimeUnit.SECONDS)
+        queued.get(5, TimeUnit.SECONDS)
+    }
+}
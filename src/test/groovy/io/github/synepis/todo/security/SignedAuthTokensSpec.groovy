@@ -0,0 +1,69 @@
+package io.github.synepis.todo.security
+
+import io.github.synepis.todo.login.UserLogin
+import io.github.synepis.todo.user.UserRole
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.Instant
+
+class SignedAuthTokensSpec extends Specification {
+
+    private static final String SIGNING_KEY = Base64.encoder.encodeToString(("k" * 32).bytes)
+
+    private def signedAuthTokens = new SignedAuthTokens(AuthTokenMode.SIGNED, SIGNING_KEY)
+
+    def "an issued token verifies back to the login's principal"() {
+        given:
+        def createdOn = Instant.ofEpochMilli(1_000_000)
+        def login = new UserLogin(3, 5, "opaque-token", createdOn, createdOn.plusSeconds(600))
+
+        when:
+        def token = signedAuthTokens.issue(login, roles)
+        def principal = signedAuthTokens.verify(token)
+
+        then:
+        signedAuthTokens.isSignedToken(token)
+        principal.isPresent()
+        principal.get().loginId == 3
+        principal.get().userId == 5
+        principal.get().createdOn == login.createdOn
+        principal.get().expiresOn == login.expiresOn
+        principal.get().roles == roles
+
+        where:
+        roles << [Set.of(), Set.of(UserRole.ROLE_USER), Set.of(UserRole.ROLE_USER, UserRole.ROLE_ADMIN)]
+    }
+
+    @Unroll
+    def "rejects #description"() {
+        given:
+        def login = new UserLogin(3, 5, "opaque-token", Instant.now(), Instant.now().plusSeconds(600))
+        def token = signedAuthTokens.issue(login, Set.of(UserRole.ROLE_USER))
+        def otherKey = Base64.encoder.encodeToString(("o" * 32).bytes)
+
+        expect:
+        !signedAuthTokens.verify(tamper(token, otherKey)).isPresent()
+
+        where:
+        description                 | tamper
+        "a modified payload"        | { String t, k -> Base64.urlEncoder.withoutPadding().encodeToString("3:5:0:9999999999999:ROLE_ADMIN".bytes) + t.substring(t.indexOf('.')) }
+        "a modified signature"      | { String t, k -> t.substring(0, t.length() - 2) + (t.endsWith("AA") ? "BB" : "AA") }
+        "a token signed elsewhere"  | { String t, k -> new SignedAuthTokens(AuthTokenMode.SIGNED, k).issue(new UserLogin(3, 5, "x", Instant.now(), Instant.now()), Set.of()) }
+        "garbage"                   | { String t, k -> "not.a-token" }
+    }
+
+    def "opaque tokens are not treated as signed"() {
+        expect:
+        !signedAuthTokens.isSignedToken(UUID.randomUUID().toString())
+        !new SignedAuthTokens(AuthTokenMode.OPAQUE, "").isSignedToken("payload.signature")
+    }
+
+    def "signed mode requires a long enough key"() {
+        when:
+        new SignedAuthTokens(AuthTokenMode.SIGNED, Base64.encoder.encodeToString("short".bytes))
+
+        then:
+        thrown IllegalStateException
+    }
+}
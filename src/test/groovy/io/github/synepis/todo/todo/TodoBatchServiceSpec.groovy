@@ -0,0 +1,125 @@
+package io.github.synepis.todo.todo
+
+import io.github.synepis.todo.exception.BadRequestException
+import io.github.synepis.todo.todo.dto.TodoBatchOperation
+import io.github.synepis.todo.todo.dto.TodoBatchResult.Outcome
+import spock.lang.Specification
+
+import java.time.Clock
+import java.time.Instant
+
+import static io.github.synepis.todo.todo.dto.TodoBatchOperationType.*
+
+class TodoBatchServiceSpec extends Specification {
+
+    private def clock = Mock(Clock)
+    private def todoRepository = Mock(TodoRepository)
+    private def todoBatchService = new TodoBatchService(clock, todoRepository, 5)
+
+    def setup() {
+        clock.instant() >> Instant.parse("2019-03-01T10:00:00Z")
+    }
+
+    def "consecutive operations of a type go to the database together, in order"() {
+        given:
+        def operations = [
+                aCreate("first"),
+                aCreate("second"),
+                TodoBatchOperation.builder().type(UPDATE).id(7).todoStatus(TodoStatus.DONE).build(),
+                TodoBatchOperation.builder().type(DELETE).id(8).build(),
+                TodoBatchOperation.builder().type(DELETE).id(9).build()
+        ]
+
+        when:
+        def results = todoBatchService.apply(1, operations)
+
+        then:
+        1 * todoRepository.insertAll({ it*.title == ["first", "second"] && it*.userId == [1L, 1L] }) >> { args ->
+            args[0].withIndex().collect { todo, i -> todo.withId(100 + i) }
+        }
+
+        then:
+        1 * todoRepository.patchAll(1, { it*.id == [7L] && it[0].status == TodoStatus.DONE && it[0].title == null }) >> ([1] as int[])
+
+        then:
+        1 * todoRepository.deleteAll(1, [8L, 9L]) >> ([1, 0] as int[])
+        0 * todoRepository._
+
+        and:
+        results*.outcome == [Outcome.CREATED, Outcome.CREATED, Outcome.UPDATED, Outcome.DELETED, Outcome.NOT_FOUND]
+        results*.id == [100L, 101L, 7L, 8L, 9L]
+    }
+
+    def "invalid operations are reported without failing the others"() {
+        when:
+        def results = todoBatchService.apply(1, [
+                aCreate("valid"),
+                TodoBatchOperation.builder().type(CREATE).title(" ").build(),
+                TodoBatchOperation.builder().type(DELETE).build()
+        ])
+
+        then:
+        1 * todoRepository.insertAll({ it*.title == ["valid"] }) >> { args -> [args[0][0].withId(100)] }
+        1 * todoRepository.deleteAll(1, []) >> ([] as int[])
+
+        and:
+        results*.outcome == [Outcome.CREATED, Outcome.INVALID, Outcome.INVALID]
+        results[1].message == "title: must not be blank"
+        results[2].message == "id: must not be null"
+    }
+
+    def "titles that would not fit the column, and blank titles on update, are invalid"() {
+        when:
+        def result = todoBatchService.apply(1, [operation])[0]
+
+        then:
+        0 * todoRepository.insertAll({ !it.isEmpty() })
+        0 * todoRepository.patchAll(_, { !it.isEmpty() })
+
+        and:
+        result.outcome == Outcome.INVALID
+        result.message == message
+
+        where:
+        operation                                                              | message
+        aCreate("a" * 201)                                                     | "title: must be at most 200 characters"
+        TodoBatchOperation.builder().type(UPDATE).id(7).title("a" * 201).build() | "title: must be at most 200 characters"
+        TodoBatchOperation.builder().type(UPDATE).id(7).title(" ").build()     | "title: must not be blank"
+    }
+
+    def "a status transition is a single statement for all matching todos"() {
+        when:
+        def results = todoBatchService.apply(1, [
+                TodoBatchOperation.builder()
+                        .type(SET_STATUS)
+                        .fromStatuses([TodoStatus.IN_PROGRESS] as Set)
+                        .todoStatus(TodoStatus.DONE)
+                        .build()
+        ])
+
+        then:
+        1 * todoRepository.updateStatus(1, { it == [TodoStatus.IN_PROGRESS] as Set }, TodoStatus.DONE) >> 12
+
+        and:
+        results[0].outcome == Outcome.UPDATED
+        results[0].count == 12
+    }
+
+    def "rejects batches over the maximum size"() {
+        when:
+        todoBatchService.apply(1, (1..6).collect { aCreate("todo" + it) })
+
+        then:
+        thrown BadRequestException
+        0 * todoRepository._
+    }
+
+    private static TodoBatchOperation aCreate(String title) {
+        TodoBatchOperation.builder()
+                .type(CREATE)
+                .title(title)
+                .todoPriority(TodoPriority.MEDIUM)
+                .todoStatus(TodoStatus.NOT_STARTED)
+                .build()
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.synepis.todo.todo
+
+import io.github.synepis.todo.exception.BadRequestException
+import spock.lang.Specification
+
+import java.time.Instant
+
+class TodoChangeCursorSpec extends Specification {
+
+    def "a cursor survives encoding, to the second"() {
+        given:
+        def cursor = new TodoChangeCursor(42, Instant.parse("2019-03-01T10:15:30Z"))
+
+        expect:
+        TodoChangeCursor.decode(cursor.encode()) == cursor
+        cursor.encode() ==~ /[A-Za-z0-9_-]+/
+    }
+
+    def "rejects a malformed cursor"() {
+        when:
+        TodoChangeCursor.decode(cursor)
+
+        then:
+        thrown BadRequestException
+
+        where:
+        cursor << ["not base64!", "", Base64.urlEncoder.encodeToString("1".bytes), Base64.urlEncoder.encodeToString("a:b".bytes)]
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.synepis.todo.todo
+
+import io.github.synepis.todo.exception.GoneException
+import spock.lang.Specification
+
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+
+class TodoChangesServiceSpec extends Specification {
+
+    private def now = Instant.parse("2019-03-01T10:00:00Z")
+    private def clock = Mock(Clock)
+    private def todoRepository = Mock(TodoRepository)
+    private def todoDeletionRepository = Mock(TodoDeletionRepository)
+    private def todoChangesService = new TodoChangesService(clock, todoRepository, todoDeletionRepository, 3600)
+
+    def setup() {
+        clock.instant() >> now
+    }
+
+    def "merges changed todos and tombstones in version order, up to the limit"() {
+        when:
+        def changes = todoChangesService.changesSince(1, new TodoChangeCursor(10, now), 3)
+
+        then:
+        1 * todoRepository.findByUserIdSince(1, 10, 4) >> [todo(1, 11), todo(2, 13), todo(3, 15)]
+        1 * todoDeletionRepository.findByUserIdSince(1, 10, 4) >> [new TodoDeletion(4, 12), new TodoDeletion(5, 16)]
+        changes.todos*.id == [1L, 2L]
+        changes.deletions*.todoId == [4L]
+        changes.cursor == new TodoChangeCursor(13, now)
+        changes.more
+    }
+
+    def "keeps the cursor when nothing changed"() {
+        when:
+        def changes = todoChangesService.changesSince(1, new TodoChangeCursor(10, now.minusSeconds(60)), 3)
+
+        then:
+        1 * todoRepository.findByUserIdSince(1, 10, 4) >> []
+        1 * todoDeletionRepository.findByUserIdSince(1, 10, 4) >> []
+        changes.todos.isEmpty()
+        changes.deletions.isEmpty()
+        changes.cursor == new TodoChangeCursor(10, now)
+        !changes.more
+    }
+
+    def "a first sync reads every todo and no tombstones"() {
+        when:
+        def changes = todoChangesService.changesSince(1, null, 3)
+
+        then:
+        1 * todoRepository.findByUserIdSince(1, 0, 4) >> [todo(1, 11)]
+        0 * todoDeletionRepository._
+        changes.todos*.id == [1L]
+        changes.cursor.version == 11
+        !changes.more
+    }
+
+    def "rejects a cursor older than the tombstones are kept"() {
+        when:
+        todoChangesService.changesSince(1, new TodoChangeCursor(10, now.minus(Duration.ofHours(2))), 3)
+
+        then:
+        thrown GoneException
+        0 * todoRepository._
+    }
+
+    private static Todo todo(long id, long version) {
+        Todo.builder()
+                .id(id)
+                .userId(1)
+                .title("todo " + id)
+                .createdOn(Instant.EPOCH)
+                .priority(TodoPriority.LOW)
+                .status(TodoStatus.NOT_STARTED)
+                .version(version)
+                .build()
+    }
+}
@@ -3,7 +3,13 @@ package io.github.synepis.todo.todo
 import io.github.synepis.todo.IntegrationTestBaseSpec
 import io.github.synepis.todo.exception.ApiError
 import io.github.synepis.todo.todo.dto.CreateTodoRequest
+import io.github.synepis.todo.todo.dto.TodoBatchOperation
+import io.github.synepis.todo.todo.dto.TodoBatchOperationType
+import io.github.synepis.todo.todo.dto.TodoBatchRequest
+import io.github.synepis.todo.todo.dto.TodoBatchResult
+import io.github.synepis.todo.todo.dto.TodoChangesDto
 import io.github.synepis.todo.todo.dto.TodoDto
+import io.github.synepis.todo.todo.dto.TodoStatisticsDto
 import io.github.synepis.todo.todo.dto.UpdateTodoRequest
 import io.github.synepis.todo.utils.LoginUtils
 import io.github.synepis.todo.utils.TestTodoFactory
@@ -16,6 +22,9 @@ import org.springframework.http.HttpEntity
 import org.springframework.http.HttpHeaders
 import org.springframework.http.HttpMethod
 import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
+
+import java.time.Instant
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 class TodoControllerIntSpec extends IntegrationTestBaseSpec {
@@ -78,6 +87,323 @@ class TodoControllerIntSpec extends IntegrationTestBaseSpec {
         nonAdminResponse.body.status == HttpStatus.FORBIDDEN.name()
     }
 
+    def "getAllTodosForUser(): should filter and sort by query parameters"() {
+        given:
+        def user = testUserFactory.aUser()
+        def todos = (1..4).collect { testTodoFactory.aTodo(user) }
+        todoRepository.update(todos[1].withStatus(TodoStatus.DONE).withPriority(TodoPriority.HIGH))
+        todoRepository.update(todos[3].withStatus(TodoStatus.DONE))
+        def login = loginUtils.doLogin(user)
+        def headers = new HttpHeaders(Map.of("x-auth-token", login.authToken))
+
+        when:
+        def response = testRestTemplate.exchange(
+                "/users/" + user.id + "/todos?status=DONE&order=DESC", HttpMethod.GET,
+                new HttpEntity<>(null, headers),
+                new ParameterizedTypeReference<List<TodoDto>>() {})
+        def highPriority = testRestTemplate.exchange(
+                "/users/" + user.id + "/todos?status=DONE,IN_PROGRESS&priority=HIGH", HttpMethod.GET,
+                new HttpEntity<>(null, headers),
+                new ParameterizedTypeReference<List<TodoDto>>() {})
+        def byPriority = testRestTemplate.exchange(
+                "/users/" + user.id + "/todos?sort=PRIORITY&order=DESC", HttpMethod.GET,
+                new HttpEntity<>(null, headers),
+                new ParameterizedTypeReference<List<TodoDto>>() {})
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body*.id == [todos[3].id, todos[1].id]
+        highPriority.body*.id == [todos[1].id]
+        byPriority.body*.id == [todos[1].id, todos[3].id, todos[2].id, todos[0].id]
+    }
+
+    def "getAllTodosForUser(): should filter by a created on range"() {
+        given:
+        def user = testUserFactory.aUser()
+        def createdOn = Instant.parse("2019-03-01T10:00:00Z")
+        def todos = (0..3).collect {
+            def todo = testTodoFactory.aTodo(user).withCreatedOn(createdOn.plusSeconds(it))
+            todoRepository.update(todo)
+            todo
+        }
+        def headers = new HttpHeaders(Map.of("x-auth-token", loginUtils.doLogin(user).authToken))
+
+        when:
+        def response = testRestTemplate.exchange(
+                "/users/" + user.id + "/todos?createdFrom=2019-03-01T10:00:01Z&createdTo=2019-03-01T10:00:03Z",
+                HttpMethod.GET,
+                new HttpEntity<>(null, headers),
+                new ParameterizedTypeReference<List<TodoDto>>() {})
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body*.id == [todos[1].id, todos[2].id]
+    }
+
+    def "getAllTodosForUser() and searchTodosForUser(): should reject malformed or missing query parameters"() {
+        given:
+        def user = testUserFactory.aUser()
+        def headers = new HttpHeaders(Map.of("x-auth-token", loginUtils.doLogin(user).authToken))
+
+        when:
+        def response = testRestTemplate.exchange(
+                "/users/" + user.id + query, HttpMethod.GET, new HttpEntity<>(null, headers), ApiError.class)
+
+        then:
+        response.statusCode == HttpStatus.BAD_REQUEST
+        response.body.status == HttpStatus.BAD_REQUEST.name()
+        response.body.userMessages == [message]
+
+        where:
+        query                              | message
+        "/todos?status=FOO"                | "status: invalid value 'FOO'"
+        "/todos?limit=abc"                 | "limit: invalid value 'abc'"
+        "/todos?createdFrom=yesterday"     | "createdFrom: invalid value 'yesterday'"
+        "/todos/search"                    | "q: must not be missing"
+    }
+
+    def "searchTodosForUser(): should find matching todos for the owner only"() {
+        given:
+        def user = testUserFactory.aUser()
+        def todos = (1..3).collect { testTodoFactory.aTodo(user) }
+        todoRepository.update(todos[1].withTitle("Renew passport"))
+        def ownerHeaders = new HttpHeaders(Map.of("x-auth-token", loginUtils.doLogin(user).authToken))
+        def otherHeaders = new HttpHeaders(Map.of("x-auth-token", loginUtils.doLogin(testUserFactory.aUser()).authToken))
+        def url = "/users/" + user.id + "/todos/search?q=passport"
+
+        when:
+        def response = testRestTemplate.exchange(
+                url, HttpMethod.GET,
+                new HttpEntity<>(null, ownerHeaders),
+                new ParameterizedTypeReference<List<TodoDto>>() {})
+        def otherResponse = testRestTemplate.exchange(
+                url, HttpMethod.GET, new HttpEntity<>(null, otherHeaders), ApiError.class)
+        def blankResponse = testRestTemplate.exchange(
+                "/users/" + user.id + "/todos/search?q=%20", HttpMethod.GET,
+                new HttpEntity<>(null, ownerHeaders), ApiError.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body*.id == [todos[1].id]
+        otherResponse.statusCode == HttpStatus.FORBIDDEN
+        blankResponse.statusCode == HttpStatus.BAD_REQUEST
+    }
+
+    def "batchForUser(): should apply mixed operations in one request, with a result per operation"() {
+        given:
+        def user = testUserFactory.aUser()
+        def todos = (1..3).collect { testTodoFactory.aTodo(user) }
+        def othersTodo = testTodoFactory.aTodo(testUserFactory.aUser())
+        def headers = new HttpHeaders(Map.of("x-auth-token", loginUtils.doLogin(user).authToken))
+        def request = TodoBatchRequest.builder().operations([
+                TodoBatchOperation.builder().type(TodoBatchOperationType.CREATE).title("new")
+                        .todoPriority(TodoPriority.HIGH).todoStatus(TodoStatus.NOT_STARTED).build(),
+                TodoBatchOperation.builder().type(TodoBatchOperationType.UPDATE).id(todos[0].id).title("renamed").build(),
+                TodoBatchOperation.builder().type(TodoBatchOperationType.UPDATE).id(othersTodo.id).title("stolen").build(),
+                TodoBatchOperation.builder().type(TodoBatchOperationType.DELETE).id(todos[1].id).build(),
+                TodoBatchOperation.builder().type(TodoBatchOperationType.SET_STATUS).todoStatus(TodoStatus.DONE).build()
+        ]).build()
+
+        when:
+        def response = testRestTemplate.exchange(
+                "/users/" + user.id + "/todos:batch", HttpMethod.POST,
+                new HttpEntity<>(request, headers),
+                new ParameterizedTypeReference<List<TodoBatchResult>>() {})
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body*.outcome == [
+                TodoBatchResult.Outcome.CREATED,
+                TodoBatchResult.Outcome.UPDATED,
+                TodoBatchResult.Outcome.NOT_FOUND,
+                TodoBatchResult.Outcome.DELETED,
+                TodoBatchResult.Outcome.UPDATED]
+        response.body[4].count == 3
+
+        and:
+        def created = todoRepository.findById(response.body[0].id).get()
+        created.title == "new"
+        created.status == TodoStatus.DONE
+        todoRepository.findById(todos[0].id).get().title == "renamed"
+        todoRepository.findById(todos[1].id).isEmpty()
+        todoRepository.findById(othersTodo.id).get().title == othersTodo.title
+    }
+
+    def "updateTodoForUser() and deleteTodoForUser(): should not find someone else's todo"() {
+        given:
+        def user = testUserFactory.aUser()
+        def othersTodo = testTodoFactory.aTodo(testUserFactory.aUser())
+        def headers = new HttpHeaders(Map.of("x-auth-token", loginUtils.doLogin(user).authToken))
+        headers.setContentType(MediaType.APPLICATION_JSON)
+        def url = "/users/" + user.id + "/todos/" + othersTodo.id
+
+        when:
+        def updateResponse = testRestTemplate.exchange(
+                url, HttpMethod.PUT,
+                new HttpEntity<>(UpdateTodoRequest.builder().title("stolen").build(), headers),
+                ApiError.class)
+        def deleteResponse = testRestTemplate.exchange(
+                url, HttpMethod.DELETE, new HttpEntity<>(null, headers), ApiError.class)
+
+        then:
+        updateResponse.statusCode == HttpStatus.NOT_FOUND
+        deleteResponse.statusCode == HttpStatus.NOT_FOUND
+        todoRepository.findById(othersTodo.id).get() == othersTodo
+    }
+
+    def "getAllTodosForUser(): should answer an unchanged poll with 304 Not Modified"() {
+        given:
+        def user = testUserFactory.aUser()
+        def todo = testTodoFactory.aTodo(user)
+        def headers = new HttpHeaders(Map.of("x-auth-token", loginUtils.doLogin(user).authToken))
+        def url = "/users/" + user.id + "/todos"
+        def first = testRestTemplate.exchange(
+                url, HttpMethod.GET, new HttpEntity<>(null, headers), new ParameterizedTypeReference<List<TodoDto>>() {})
+        headers.setIfNoneMatch(first.headers.getETag())
+        def updateHeaders = new HttpHeaders(Map.of("x-auth-token", headers.getFirst("x-auth-token")))
+        updateHeaders.setContentType(MediaType.APPLICATION_JSON)
+
+        when:
+        def unchanged = testRestTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(null, headers), String.class)
+        testRestTemplate.exchange(
+                url + "/" + todo.id, HttpMethod.PUT,
+                new HttpEntity<>(UpdateTodoRequest.builder().todoStatus(TodoStatus.DONE).build(), updateHeaders),
+                String.class)
+        def changed = testRestTemplate.exchange(
+                url, HttpMethod.GET, new HttpEntity<>(null, headers), new ParameterizedTypeReference<List<TodoDto>>() {})
+
+        then:
+        first.headers.getETag() != null
+        unchanged.statusCode == HttpStatus.NOT_MODIFIED
+        unchanged.body == null
+        changed.statusCode == HttpStatus.OK
+        changed.body[0].status == TodoStatus.DONE
+        changed.headers.getETag() != first.headers.getETag()
+    }
+
+    def "getTodoChangesForUser(): should return only what changed since the cursor, with tombstones"() {
+        given:
+        def user = testUserFactory.aUser()
+        def kept = testTodoFactory.aTodo(user)
+        def deleted = testTodoFactory.aTodo(user)
+        def headers = new HttpHeaders(Map.of("x-auth-token", loginUtils.doLogin(user).authToken))
+        def url = "/users/" + user.id + "/todos/changes"
+        def first = testRestTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(null, headers), TodoChangesDto.class)
+
+        when:
+        testRestTemplate.exchange(
+                "/users/" + user.id + "/todos/" + deleted.id, HttpMethod.DELETE, new HttpEntity<>(null, headers), String.class)
+        def added = testTodoFactory.aTodo(user)
+        def second = testRestTemplate.exchange(
+                url + "?since=" + first.body.cursor, HttpMethod.GET, new HttpEntity<>(null, headers), TodoChangesDto.class)
+        def third = testRestTemplate.exchange(
+                url + "?since=" + second.body.cursor, HttpMethod.GET, new HttpEntity<>(null, headers), TodoChangesDto.class)
+
+        then:
+        first.body.todos*.id == [kept.id, deleted.id]
+        !first.body.more
+        second.body.todos*.id == [added.id]
+        second.body.deletedIds == [deleted.id]
+        third.body.todos.isEmpty()
+        third.body.deletedIds.isEmpty()
+    }
+
+    def "getTodoStatisticsForUser(): should count the user's todos by status and priority"() {
+        given:
+        def user = testUserFactory.aUser()
+        def other = testUserFactory.aUser()
+        testTodoFactory.aTodo(user)
+        testTodoFactory.aTodo(user)
+        testTodoFactory.aTodo(other)
+        def headers = new HttpHeaders(Map.of("x-auth-token", loginUtils.doLogin(user).authToken))
+
+        when:
+        def response = testRestTemplate.exchange(
+                "/users/" + user.id + "/todos/statistics", HttpMethod.GET, new HttpEntity<>(null, headers),
+                TodoStatisticsDto.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body.total == 2
+        !response.body.approximate
+        response.body.byStatus.values().sum() == 2
+        response.body.byPriority.values().sum() == 2
+        response.body.byStatus.keySet() == TodoStatus.values() as Set
+    }
+
+    def "updateTodoForUser(): should reject a stale If-Match with 412 Precondition Failed"() {
+        given:
+        def user = testUserFactory.aUser()
+        def todo = testTodoFactory.aTodo(user)
+        def headers = new HttpHeaders(Map.of("x-auth-token", loginUtils.doLogin(user).authToken))
+        headers.setContentType(MediaType.APPLICATION_JSON)
+        headers.setIfMatch("\"" + todo.version + "\"")
+        def url = "/users/" + user.id + "/todos/" + todo.id
+
+        when:
+        def first = testRestTemplate.exchange(
+                url, HttpMethod.PUT, new HttpEntity<>(UpdateTodoRequest.builder().title("first").build(), headers), String.class)
+        def second = testRestTemplate.exchange(
+                url, HttpMethod.PUT, new HttpEntity<>(UpdateTodoRequest.builder().title("second").build(), headers), ApiError.class)
+
+        then:
+        first.statusCode == HttpStatus.OK
+        first.headers.getETag() == "\"" + todoRepository.findById(todo.id).get().version + "\""
+        second.statusCode == HttpStatus.PRECONDITION_FAILED
+        todoRepository.findById(todo.id).get().title == "first"
+    }
+
+    def "exportAllTodos(): should stream every todo when user is admin"() {
+        given:
+        def user = testUserFactory.aUser()
+        def todos = (1..5).collect { testTodoFactory.aTodo(user) }
+        def adminLogin = loginUtils.doLogin(testUserFactory.anAdminUser())
+        def adminHeaders = new HttpHeaders(Map.of("x-auth-token", adminLogin.authToken))
+
+        when:
+        def response = testRestTemplate.exchange(
+                "/todos/export", HttpMethod.GET,
+                new HttpEntity<>(null, adminHeaders),
+                new ParameterizedTypeReference<List<TodoDto>>() {})
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body*.id == todos*.id
+    }
+
+    def "getAllTodosForUser(): should page with a limit and the next cursor header"() {
+        given:
+        def user = testUserFactory.aUser()
+        def todos = (1..3).collect { testTodoFactory.aTodo(user) }
+        def login = loginUtils.doLogin(user)
+        def headers = new HttpHeaders(Map.of("x-auth-token", login.authToken))
+        def url = "/users/" + user.id + "/todos?limit=2"
+
+        when:
+        def firstPage = testRestTemplate.exchange(
+                url, HttpMethod.GET,
+                new HttpEntity<>(null, headers),
+                new ParameterizedTypeReference<List<TodoDto>>() {})
+        def cursor = firstPage.headers.getFirst(TodoController.NEXT_CURSOR_HEADER)
+        def secondPage = testRestTemplate.exchange(
+                url + "&cursor=" + cursor, HttpMethod.GET,
+                new HttpEntity<>(null, headers),
+                new ParameterizedTypeReference<List<TodoDto>>() {})
+
+        then:
+        firstPage.statusCode == HttpStatus.OK
+        firstPage.body*.id == todos[0..1]*.id
+        secondPage.body*.id == [todos[2].id]
+        !secondPage.headers.containsKey(TodoController.NEXT_CURSOR_HEADER)
+
+        when:
+        def badCursor = testRestTemplate.exchange(
+                url + "&cursor=garbage", HttpMethod.GET, new HttpEntity<>(null, headers), ApiError.class)
+
+        then:
+        badCursor.statusCode == HttpStatus.BAD_REQUEST
+    }
+
     def "getTodo(): should work when user is admin"() {
         given:
         def user = testUserFactory.aUser()
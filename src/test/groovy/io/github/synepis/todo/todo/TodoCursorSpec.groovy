@@ -0,0 +1,43 @@
+package io.github.synepis.todo.todo
+
+import io.github.synepis.todo.exception.BadRequestException
+import spock.lang.Specification
+
+import java.time.Instant
+
+class TodoCursorSpec extends Specification {
+
+    def "a cursor survives encoding, down to the microsecond"() {
+        given:
+        def cursor = new TodoCursor(Instant.parse("2019-03-01T10:15:30.123456Z"), 42)
+
+        expect:
+        TodoCursor.decode(cursor.encode()) == cursor
+    }
+
+    def "a cursor keeps the priority it was issued at"() {
+        given:
+        def cursor = new TodoCursor(Instant.parse("2019-03-01T10:15:30.123456Z"), 42, TodoPriority.HIGH)
+
+        expect:
+        TodoCursor.decode(cursor.encode()) == cursor
+        TodoCursor.decode(new TodoCursor(cursor.createdOn, cursor.id).encode()).priority == null
+    }
+
+    def "an encoded cursor is safe to put in a url"() {
+        expect:
+        new TodoCursor(Instant.parse("2019-03-01T10:15:30.123456Z"), Long.MAX_VALUE).encode() ==~ /[A-Za-z0-9_-]+/
+    }
+
+    def "rejects a malformed cursor"() {
+        when:
+        TodoCursor.decode(cursor)
+
+        then:
+        thrown BadRequestException
+
+        where:
+        cursor << ["not base64!", "", Base64.urlEncoder.encodeToString("1:2".bytes), Base64.urlEncoder.encodeToString("a:b:c".bytes),
+                   Base64.urlEncoder.encodeToString("1:2:3:7".bytes)]
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.synepis.todo.todo
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.time.Duration
+
+class TodoDeletionReaperSpec extends Specification {
+
+    private def todoDeletionRepository = Mock(TodoDeletionRepository)
+    private def meterRegistry = new SimpleMeterRegistry()
+    private def reaper = new TodoDeletionReaper(todoDeletionRepository, meterRegistry, 86400, 10, 3)
+
+    def "deletes tombstones past the retention, with a margin, until a partial batch"() {
+        given:
+        def age = Duration.ofDays(1).plus(Duration.ofHours(1))
+
+        when:
+        reaper.reap()
+
+        then:
+        1 * todoDeletionRepository.deleteOlderThanBatch(age, 10) >> 10
+        1 * todoDeletionRepository.deleteOlderThanBatch(age, 10) >> 3
+        meterRegistry.counter("todo_deletion.reaper.reclaimed").count() == 13
+    }
+
+    def "stops after the maximum number of batches per run"() {
+        when:
+        reaper.reap()
+
+        then:
+        3 * todoDeletionRepository.deleteOlderThanBatch(_, 10) >> 10
+    }
+}
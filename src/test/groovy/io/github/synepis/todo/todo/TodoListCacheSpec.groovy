@@ -0,0 +1,120 @@
+package io.github.synepis.todo.todo
+
+import io.github.synepis.todo.datasource.ReadYourWrites
+import io.github.synepis.todo.notification.PostgresNotificationBus
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.util.function.Consumer
+
+class TodoListCacheSpec extends Specification {
+
+    private def notificationBus = Mock(PostgresNotificationBus)
+    private def readYourWrites = Mock(ReadYourWrites)
+    private def meterRegistry = new SimpleMeterRegistry()
+    private Consumer<String> listener
+    private Runnable resync
+    private TodoListCache todoListCache
+
+    def setup() {
+        notificationBus.subscribe(TodoListCache.INVALIDATION_CHANNEL, _, _) >> { args ->
+            listener = args[1]
+            resync = args[2]
+        }
+        todoListCache = new TodoListCache(notificationBus, readYourWrites, meterRegistry, 1024 * 1024, 60)
+    }
+
+    def "returns a cached page for the same user and query only"() {
+        given:
+        def entry = entry("[]")
+        todoListCache.put(key(1), entry, todoListCache.generation())
+
+        expect:
+        todoListCache.get(key(1)).get() == entry
+        todoListCache.get(new TodoListCache.Key(1, TodoFilter.NONE, null, 10)).isEmpty()
+        todoListCache.get(key(2)).isEmpty()
+    }
+
+    def "invalidating a user evicts all of their pages and notifies the other nodes"() {
+        given:
+        def otherPage = new TodoListCache.Key(1, TodoFilter.builder().order(TodoSortOrder.DESC).build(), null, 100)
+        todoListCache.put(key(1), entry("[]"), todoListCache.generation())
+        todoListCache.put(otherPage, entry("[]"), todoListCache.generation())
+        todoListCache.put(key(2), entry("[]"), todoListCache.generation())
+
+        when:
+        todoListCache.invalidateUser(1)
+
+        then:
+        1 * notificationBus.publish(TodoListCache.INVALIDATION_CHANNEL, "1")
+        todoListCache.get(key(1)).isEmpty()
+        todoListCache.get(otherPage).isEmpty()
+        todoListCache.get(key(2)).isPresent()
+        invalidations() == 1
+    }
+
+    def "evicts a user's pages on an invalidation from another node, once their reads are pinned to the primary"() {
+        given:
+        todoListCache.put(key(1), entry("[]"), todoListCache.generation())
+
+        when:
+        listener.accept("1")
+
+        then:
+        1 * readYourWrites.recordWrite(1) >> { assert todoListCache.get(key(1)).isPresent() }
+        todoListCache.get(key(1)).isEmpty()
+        0 * notificationBus.publish(_, _)
+    }
+
+    def "drops every page once notifications may have been missed"() {
+        given:
+        def generation = todoListCache.generation()
+        todoListCache.put(key(1), entry("[]"), generation)
+        todoListCache.put(key(2), entry("[]"), generation)
+
+        when: "the listener has reconnected"
+        resync.run()
+        todoListCache.put(key(3), entry("[]"), generation)
+
+        then:
+        1 * readYourWrites.recordWriteForAll() >> { assert todoListCache.get(key(1)).isPresent() }
+        todoListCache.get(key(1)).isEmpty()
+        todoListCache.get(key(2)).isEmpty()
+        todoListCache.get(key(3)).isEmpty()
+    }
+
+    def "does not cache a page read before a racing invalidation"() {
+        given:
+        def generation = todoListCache.generation()
+        todoListCache.invalidateUser(1)
+
+        when:
+        todoListCache.put(key(1), entry("[]"), generation)
+
+        then:
+        todoListCache.get(key(1)).isEmpty()
+    }
+
+    def "ignores unknown invalidations"() {
+        given:
+        todoListCache.put(key(1), entry("[]"), todoListCache.generation())
+
+        when:
+        listener.accept("nonsense")
+
+        then:
+        todoListCache.get(key(1)).isPresent()
+    }
+
+    private static TodoListCache.Key key(long userId) {
+        new TodoListCache.Key(userId, TodoFilter.NONE, null, 100)
+    }
+
+    private static TodoListCache.Entry entry(String body) {
+        new TodoListCache.Entry(body.bytes, '"1"', null)
+    }
+
+    private double invalidations() {
+        meterRegistry.get("cache.invalidations").tag("cache", "todo-list").counter().count()
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.synepis.todo.todo
+
+import spock.lang.Specification
+
+class TodoPrioritySpec extends Specification {
+
+    def "codes round trip and follow the rank"() {
+        expect:
+        TodoPriority.values().every { TodoPriority.ofCode(it.code) == it }
+        TodoPriority.values().sort { it.code } == [TodoPriority.LOW, TodoPriority.MEDIUM, TodoPriority.HIGH]
+    }
+}
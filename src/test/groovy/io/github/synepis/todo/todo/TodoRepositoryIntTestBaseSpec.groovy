@@ -5,8 +5,14 @@ import io.github.synepis.todo.user.User
 import io.github.synepis.todo.utils.TestUserFactory
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate
+import spock.util.concurrent.PollingConditions
 
+import javax.sql.DataSource
+import java.time.Duration
 import java.time.Instant
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 class TodoRepositoryIntTestBaseSpec extends IntegrationTestBaseSpec {
@@ -17,9 +23,21 @@ class TodoRepositoryIntTestBaseSpec extends IntegrationTestBaseSpec {
     @Autowired
     private TodoRepository todoRepository
 
+    @Autowired
+    private TodoDeletionRepository todoDeletionRepository
+
+    @Autowired
+    private TodoCountRepository todoCountRepository
+
     @Autowired
     private TestUserFactory testUserFactory;
 
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate
+
+    @Autowired
+    private DataSource dataSource
+
 
     def setup() {
         user = testUserFactory.aUser()
@@ -53,7 +71,8 @@ class TodoRepositoryIntTestBaseSpec extends IntegrationTestBaseSpec {
 
         then:
         success
-        todo == retrieved
+        retrieved.withVersion(todo.version) == todo
+        retrieved.version > todo.version
     }
 
     def "able to delete a todo"() {
@@ -69,6 +88,167 @@ class TodoRepositoryIntTestBaseSpec extends IntegrationTestBaseSpec {
         retrieved.isEmpty()
     }
 
+    def "patches only the given fields of the user's own todo, in one statement"() {
+        given:
+        def todo = todoRepository.insert(aTodo("todo1", user.id))
+
+        when:
+        def patched = todoRepository.patch(user.id, TodoPatch.builder().id(todo.id).status(TodoStatus.DONE).build())
+        def notOwned = todoRepository.patch(user2.id, TodoPatch.builder().id(todo.id).title("stolen").build())
+
+        then:
+        patched.get().withVersion(todo.version) == todo.withStatus(TodoStatus.DONE)
+        notOwned.isEmpty()
+        todoRepository.findById(todo.id).get() == patched.get()
+    }
+
+    def "a patch with a version only applies while the todo is at that version"() {
+        given:
+        def todo = todoRepository.insert(aTodo("todo1", user.id))
+        def first = todoRepository.patch(user.id, TodoPatch.builder().id(todo.id).title("first").version(todo.version).build())
+
+        when:
+        def second = todoRepository.patch(user.id, TodoPatch.builder().id(todo.id).title("second").version(todo.version).build())
+
+        then:
+        first.get().version > todo.version
+        second.isEmpty()
+        todoRepository.findById(todo.id).get().title == "first"
+    }
+
+    def "the list version changes with every insert, update and delete, but not with a no-op update"() {
+        given:
+        def versions = []
+        def todo = todoRepository.insert(aTodo("todo1", user.id))
+        versions << todoRepository.findListVersionByUserId(user.id)
+
+        when:
+        def other = todoRepository.insert(aTodo("todo2", user.id))
+        versions << todoRepository.findListVersionByUserId(user.id)
+        todoRepository.patch(user.id, TodoPatch.builder().id(todo.id).title("renamed").build())
+        versions << todoRepository.findListVersionByUserId(user.id)
+        todoRepository.patch(user.id, TodoPatch.builder().id(todo.id).title("renamed").build())
+        versions << todoRepository.findListVersionByUserId(user.id)
+        todoRepository.deleteByIdAndUserId(todo.id, user.id)
+        versions << todoRepository.findListVersionByUserId(user.id)
+        todoRepository.insert(aTodo("todo3", user2.id))
+        versions << todoRepository.findListVersionByUserId(user.id)
+
+        then:
+        versions[0] != versions[1]
+        versions[1] != versions[2]
+        versions[2] == versions[3]
+        versions[3] != versions[4]
+        versions[4] == versions[5]
+    }
+
+    def "inserts, updates and deletes take ever higher versions, deletes leave a tombstone"() {
+        given:
+        def todo = todoRepository.insert(aTodo("todo1", user.id))
+        def other = todoRepository.insert(aTodo("todo2", user.id))
+        todoRepository.insert(aTodo("todo3", user2.id))
+
+        when:
+        def patched = todoRepository.patch(user.id, TodoPatch.builder().id(todo.id).title("renamed").build()).get()
+        todoRepository.deleteByIdAndUserId(other.id, user.id)
+        def changed = todoRepository.findByUserIdSince(user.id, other.version, 10)
+        def deletions = todoDeletionRepository.findByUserIdSince(user.id, other.version, 10)
+
+        then:
+        todo.version < other.version
+        changed*.id == [todo.id]
+        deletions*.todoId == [other.id]
+        deletions[0].version > patched.version
+        todoDeletionRepository.findByUserIdSince(user2.id, 0, 10).isEmpty()
+    }
+
+    def "tombstones are reaped by their age on the database clock"() {
+        given:
+        def old = todoRepository.insert(aTodo("todo1", user.id))
+        def recent = todoRepository.insert(aTodo("todo2", user.id))
+        todoRepository.deleteByIdAndUserId(old.id, user.id)
+        todoRepository.deleteByIdAndUserId(recent.id, user.id)
+        namedParameterJdbcTemplate.update(
+                "update todo_deletion set deleted_on = localtimestamp - interval '2 hours' where todo_id = :id",
+                [id: old.id])
+
+        when:
+        def reaped = todoDeletionRepository.deleteOlderThanBatch(Duration.ofHours(1), 10)
+
+        then:
+        reaped == 1
+        todoDeletionRepository.findByUserIdSince(user.id, 0, 10)*.todoId == [recent.id]
+    }
+
+    def "counters follow inserts, status and priority changes and deletes"() {
+        given:
+        def todo = todoRepository.insert(aTodo("todo1", user.id))
+        def other = todoRepository.insert(aTodo("todo2", user.id))
+        todoRepository.insertAll([aTodo("todo3", user.id), aTodo("todo4", user2.id)])
+
+        when:
+        todoRepository.patch(user.id, TodoPatch.builder().id(todo.id).status(TodoStatus.DONE).build())
+        todoRepository.patch(user.id, TodoPatch.builder().id(todo.id).title("renamed").build())
+        todoRepository.deleteByIdAndUserId(other.id, user.id)
+
+        then:
+        counts(user.id) == counted(user.id)
+        counts(user.id).values().sum() == 2
+        counts(user2.id) == counted(user2.id)
+    }
+
+    def "a delete does not deadlock with a write of the same user's counter"() {
+        given:
+        def deleted = todoRepository.insert(aTodo("todo1", user.id))
+        def writer = dataSource.connection
+        def deleter = dataSource.connection
+        writer.autoCommit = false
+        deleter.autoCommit = false
+
+        when: "the writer holds the user's lock and the delete waits for it"
+        writer.createStatement().execute(insertSql(user.id, TodoStatus.DONE))
+        def deletion = CompletableFuture.runAsync {
+            deleter.createStatement().executeUpdate("delete from todo where id = " + deleted.id)
+            deleter.commit()
+        }
+        new PollingConditions(timeout: 5).eventually {
+            assert jdbcTemplate.queryForObject("select count(*) from pg_locks where not granted", Long) > 0
+        }
+
+        and: "the writer then writes the counter the delete decrements"
+        writer.createStatement().execute(insertSql(user.id, TodoStatus.NOT_STARTED))
+        writer.commit()
+        deletion.get(10, TimeUnit.SECONDS)
+
+        then:
+        notThrown(Exception)
+        counts(user.id) == counted(user.id)
+        counts(user.id).values().sum() == 2
+
+        cleanup:
+        writer.close()
+        deleter.close()
+    }
+
+    def "the approximate count is read from the planner statistics"() {
+        given:
+        todoRepository.insertAll((1..100).collect { aTodo("todo" + it, user.id) })
+        jdbcTemplate.execute("analyze todo")
+
+        expect:
+        todoRepository.approximateCount() == 100
+    }
+
+    def "deletes only the user's own todo"() {
+        given:
+        def todo = todoRepository.insert(aTodo("todo1", user.id))
+
+        expect:
+        !todoRepository.deleteByIdAndUserId(todo.id, user2.id)
+        todoRepository.deleteByIdAndUserId(todo.id, user.id)
+        todoRepository.findById(todo.id).isEmpty()
+    }
+
     def "cannot update a non-existent todo"() {
         when:
         def success = todoRepository.update(aTodo("todo1", user.id))
@@ -101,6 +281,201 @@ class TodoRepositoryIntTestBaseSpec extends IntegrationTestBaseSpec {
         todo4 == retrieved2.get(0)
     }
 
+    def "pages through todos in creation order"() {
+        given:
+        def createdOn = Instant.parse("2019-03-01T10:00:00Z")
+        def todos = (1..5).collect {
+            todoRepository.insert(aTodo("todo" + it, user.id).withCreatedOn(createdOn.plusSeconds(it.intdiv(2))))
+        }
+        todoRepository.insert(aTodo("other", user2.id))
+
+        when:
+        def page1 = todoRepository.findPageByUserId(user.id, TodoFilter.NONE, null, 2)
+        def page2 = todoRepository.findPageByUserId(user.id, TodoFilter.NONE, page1.next, 2)
+        def page3 = todoRepository.findPageByUserId(user.id, TodoFilter.NONE, page2.next, 2)
+
+        then:
+        page1.todos == todos[0..1]
+        page2.todos == todos[2..3]
+        page3.todos == todos[4..4]
+        page3.next == null
+
+        and:
+        todoRepository.findPage(null, 10).todos.size() == 6
+    }
+
+    def "a page that ends exactly at the last todo has no next cursor"() {
+        given:
+        2.times { todoRepository.insert(aTodo("todo" + it, user.id)) }
+
+        expect:
+        todoRepository.findPageByUserId(user.id, TodoFilter.NONE, null, 2).next == null
+    }
+
+    def "filters by status, priority and created on range, in either order"() {
+        given:
+        def createdOn = Instant.parse("2019-03-01T10:00:00Z")
+        def todos = [
+                [TodoStatus.DONE, TodoPriority.HIGH],
+                [TodoStatus.NOT_STARTED, TodoPriority.HIGH],
+                [TodoStatus.DONE, TodoPriority.LOW],
+                [TodoStatus.IN_PROGRESS, TodoPriority.HIGH],
+                [TodoStatus.DONE, TodoPriority.HIGH]
+        ].withIndex().collect { statusAndPriority, i ->
+            todoRepository.insert(aTodo("todo" + i, user.id)
+                    .withStatus(statusAndPriority[0])
+                    .withPriority(statusAndPriority[1])
+                    .withCreatedOn(createdOn.plusSeconds(i)))
+        }
+        todoRepository.insert(aTodo("other", user2.id).withStatus(TodoStatus.DONE))
+
+        expect:
+        todoRepository.findPageByUserId(user.id, filter.build(), null, 10).todos == expected.collect { todos[it] }
+
+        where:
+        filter                                                                                       | expected
+        TodoFilter.builder().statuses([TodoStatus.DONE] as Set)                                      | [0, 2, 4]
+        TodoFilter.builder().statuses([TodoStatus.DONE, TodoStatus.IN_PROGRESS] as Set)              | [0, 2, 3, 4]
+        TodoFilter.builder().priorities([TodoPriority.HIGH] as Set)                                  | [0, 1, 3, 4]
+        TodoFilter.builder().statuses([TodoStatus.DONE] as Set).priorities([TodoPriority.HIGH] as Set) | [0, 4]
+        TodoFilter.builder().createdFrom(instant("10:00:01")).createdTo(instant("10:00:03"))          | [1, 2]
+        TodoFilter.builder().order(TodoSortOrder.DESC)                                               | [4, 3, 2, 1, 0]
+    }
+
+    def "pages through todos in descending order"() {
+        given:
+        def createdOn = Instant.parse("2019-03-01T10:00:00Z")
+        def todos = (1..3).collect {
+            todoRepository.insert(aTodo("todo" + it, user.id).withCreatedOn(createdOn.plusSeconds(it)))
+        }
+        def filter = TodoFilter.builder().order(TodoSortOrder.DESC).build()
+
+        when:
+        def page1 = todoRepository.findPageByUserId(user.id, filter, null, 2)
+        def page2 = todoRepository.findPageByUserId(user.id, filter, page1.next, 2)
+
+        then:
+        page1.todos == [todos[2], todos[1]]
+        page2.todos == [todos[0]]
+        page2.next == null
+    }
+
+    def "pages through todos by priority, then creation order, in either order"() {
+        given:
+        def createdOn = Instant.parse("2019-03-01T10:00:00Z")
+        def todos = [TodoPriority.MEDIUM, TodoPriority.HIGH, TodoPriority.LOW, TodoPriority.HIGH, TodoPriority.MEDIUM]
+                .withIndex().collect { priority, i ->
+                    todoRepository.insert(aTodo("todo" + i, user.id).withPriority(priority).withCreatedOn(createdOn.plusSeconds(i)))
+                }
+        todoRepository.insert(aTodo("other", user2.id).withPriority(TodoPriority.LOW))
+        def filter = TodoFilter.builder().sort(TodoSortKey.PRIORITY).order(order).build()
+
+        when:
+        def page1 = todoRepository.findPageByUserId(user.id, filter, null, 2)
+        def page2 = todoRepository.findPageByUserId(user.id, filter, page1.next, 2)
+        def page3 = todoRepository.findPageByUserId(user.id, filter, page2.next, 2)
+
+        then:
+        page1.todos + page2.todos + page3.todos == expected.collect { todos[it] }
+        page3.next == null
+
+        where:
+        order              | expected
+        TodoSortOrder.ASC  | [2, 0, 4, 1, 3]
+        TodoSortOrder.DESC | [3, 1, 4, 0, 2]
+    }
+
+    def "filtered pages are read from the matching composite index, already in order"() {
+        given:
+        someUsersWithManyTodos()
+        def query = todoRepository.pageQuery(user.id, filter, null, 20)
+
+        when:
+        def plan = namedParameterJdbcTemplate.queryForList("explain " + query.sql, query.params, String)
+
+        then:
+        plan.any { it.contains("Index Scan") && it.contains(index) }
+        !plan.any { it.contains("Seq Scan") || it.contains("Sort") }
+
+        where:
+        filter                                                                          | index
+        TodoFilter.NONE                                                                 | "todo_user_id_created_on_id_idx"
+        TodoFilter.builder().order(TodoSortOrder.DESC).build()                          | "todo_user_id_created_on_id_idx"
+        TodoFilter.builder().createdFrom(Instant.parse("2019-03-01T00:00:00Z")).build() | "todo_user_id_created_on_id_idx"
+        TodoFilter.builder().statuses([TodoStatus.DONE] as Set).build()                 | "todo_user_id_status_created_on_id_idx"
+        TodoFilter.builder().priorities([TodoPriority.HIGH] as Set).build()             | "todo_user_id_priority_created_on_id_idx"
+        TodoFilter.builder().sort(TodoSortKey.PRIORITY).build()                         | "todo_user_id_priority_created_on_id_idx"
+        TodoFilter.builder().sort(TodoSortKey.PRIORITY).order(TodoSortOrder.DESC).build() | "todo_user_id_priority_created_on_id_idx"
+    }
+
+    def "searches a user's todos by title and description words, title matches first"() {
+        given:
+        def inDescription = todoRepository.insert(aTodo("Groceries", user.id).withDescription("buy milk and bread"))
+        def inTitle = todoRepository.insert(aTodo("Milk", user.id).withDescription("from the corner shop"))
+        todoRepository.insert(aTodo("Laundry", user.id).withDescription("whites only"))
+        todoRepository.insert(aTodo("Milk", user2.id))
+
+        when:
+        def page1 = todoRepository.search(user.id, "milk", null, 1)
+        def page2 = todoRepository.search(user.id, "milk", page1.next, 1)
+
+        then:
+        page1.todos == [inTitle]
+        page2.todos == [inDescription]
+        page2.next == null
+
+        and: "stemmed, and kept up to date on updates"
+        todoRepository.update(inTitle.withTitle("Shopping"))
+        todoRepository.search(user.id, "shops", null, 10).todos*.id == [inTitle.id]
+        todoRepository.search(user.id, "milk", null, 10).todos*.id == [inDescription.id]
+    }
+
+    def "search is served by the GIN index on the search vector"() {
+        given:
+        someUsersWithManyTodos()
+
+        when:
+        def plan = namedParameterJdbcTemplate.queryForList(
+                "explain select id from todo where search_vector @@ plainto_tsquery('pg_catalog.english', :query)",
+                Map.of("query", "todo42"), String)
+
+        then:
+        plan.any { it.contains("todo_search_vector_idx") }
+    }
+
+    /* 200 users with 100 todos each, on top of user and user2, with planner statistics */
+    private void someUsersWithManyTodos() {
+        jdbcTemplate.update(
+                "insert into \"user\" (username, password, email, created_on) " +
+                        "select 'bulk' || i, 'password', 'bulk' || i || '@email.com', now() " +
+                        "from generate_series(1, 200) i")
+        jdbcTemplate.update(
+                "insert into todo (user_id, title, created_on, priority, status) " +
+                        "select u.id, 'todo' || i, timestamp '2019-03-01' + i * interval '1 hour', " +
+                        "i % 3, i / 3 % 3 " + // priority and status codes
+                        "from \"user\" u, generate_series(1, 100) i")
+        jdbcTemplate.execute("analyze todo")
+    }
+
+    private static Instant instant(String time) {
+        Instant.parse("2019-03-01T" + time + "Z")
+    }
+
+    private static String insertSql(long userId, TodoStatus status) {
+        "insert into todo (user_id, title, created_on, priority, status) " +
+                "values (" + userId + ", 'todo', localtimestamp, " + TodoPriority.MEDIUM.code + ", " + status.code + ")"
+    }
+
+    private Map<List, Long> counts(long userId) {
+        todoCountRepository.findByUserId(userId).collectEntries { [[it.status, it.priority], it.count] }
+    }
+
+    private Map<List, Long> counted(long userId) {
+        todoRepository.findByUserId(userId)
+                .groupBy { [it.status, it.priority] }
+                .collectEntries { key, todos -> [key, (long) todos.size()] }
+    }
+
     def aTodo(String title, Long userId) {
         return Todo.builder()
                 .userId(userId)
@@ -0,0 +1,26 @@
+package io.github.synepis.todo.todo
+
+import io.github.synepis.todo.exception.BadRequestException
+import spock.lang.Specification
+
+class TodoSearchCursorSpec extends Specification {
+
+    def "a cursor survives encoding with its exact rank"() {
+        given:
+        def cursor = new TodoSearchCursor(0.0607927f, 42)
+
+        expect:
+        TodoSearchCursor.decode(cursor.encode()) == cursor
+    }
+
+    def "rejects a malformed cursor"() {
+        when:
+        TodoSearchCursor.decode(cursor)
+
+        then:
+        thrown BadRequestException
+
+        where:
+        cursor << ["not base64!", Base64.urlEncoder.encodeToString("0.5".bytes), Base64.urlEncoder.encodeToString("x:1".bytes)]
+    }
+}
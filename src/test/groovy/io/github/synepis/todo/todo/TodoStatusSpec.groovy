@@ -0,0 +1,12 @@
+package io.github.synepis.todo.todo
+
+import spock.lang.Specification
+
+class TodoStatusSpec extends Specification {
+
+    def "codes round trip and follow the progress"() {
+        expect:
+        TodoStatus.values().every { TodoStatus.ofCode(it.code) == it }
+        TodoStatus.values().sort { it.code } == [TodoStatus.NOT_STARTED, TodoStatus.IN_PROGRESS, TodoStatus.DONE]
+    }
+}
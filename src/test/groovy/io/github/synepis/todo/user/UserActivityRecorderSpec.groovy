@@ -0,0 +1,71 @@
+package io.github.synepis.todo.user
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.time.Instant
+
+class UserActivityRecorderSpec extends Specification {
+
+    private def userRepository = Mock(UserRepository)
+    private def meterRegistry = new SimpleMeterRegistry()
+    private def recorder = new UserActivityRecorder(userRepository, meterRegistry, 3, 2)
+
+    def "coalesces activity per user and keeps the latest times"() {
+        given:
+        def now = Instant.now()
+
+        when:
+        recorder.recordLogin(1, now)
+        recorder.recordSeen(1, now.plusSeconds(10))
+        recorder.recordSeen(1, now.plusSeconds(5))
+        recorder.flush()
+
+        then:
+        1 * userRepository.updateActivity([
+                UserActivity.builder().userId(1).lastLoginOn(now).lastSeenOn(now.plusSeconds(10)).build()
+        ])
+        meterRegistry.get("user.activity.flushed").counter().count() == 1
+    }
+
+    def "flushes in batches and empties the buffer"() {
+        given:
+        def now = Instant.now()
+        (1..3).each { recorder.recordSeen(it, now) }
+
+        when:
+        recorder.flush()
+        recorder.flush()
+
+        then:
+        1 * userRepository.updateActivity({ it.size() == 2 })
+        1 * userRepository.updateActivity({ it.size() == 1 })
+        0 * userRepository._
+    }
+
+    def "drops activity for new users once the buffer is full"() {
+        given:
+        def now = Instant.now()
+
+        when:
+        (1..4).each { recorder.recordSeen(it, now) }
+        recorder.recordSeen(1, now.plusSeconds(1))
+        recorder.flush()
+
+        then:
+        2 * userRepository.updateActivity(_) >> { List<UserActivity> batch -> assert batch.every { it.userId != 4 } }
+        meterRegistry.get("user.activity.dropped").counter().count() == 1
+    }
+
+    def "a failed write is logged and does not stop later flushes"() {
+        given:
+        recorder.recordSeen(1, Instant.now())
+
+        when:
+        recorder.flush()
+
+        then:
+        1 * userRepository.updateActivity(_) >> { throw new RuntimeException("database down") }
+        noExceptionThrown()
+    }
+}
@@ -1,10 +1,18 @@
 package io.github.synepis.todo.user
 
-import org.springframework.security.crypto.password.PasswordEncoder
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
+import groovy.json.JsonSlurper
+import io.github.synepis.todo.security.AuthTokenRevocations
+import io.github.synepis.todo.security.PasswordHasher
+import io.github.synepis.todo.user.dto.UpdateUserRequest
 import spock.lang.Specification
 
 import java.time.Clock
 import java.time.Instant
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
+import java.util.function.Consumer
 
 class UserControllerSpec extends Specification {
 
@@ -12,20 +20,60 @@ class UserControllerSpec extends Specification {
 
     private UserRepository userRepository = Mock(UserRepository)
 
-    private PasswordEncoder passwordEncoder = Mock(PasswordEncoder)
+    private PasswordHasher passwordHasher = Mock(PasswordHasher)
+
+    private AuthTokenRevocations authTokenRevocations = Mock(AuthTokenRevocations)
+
+    private ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
 
     private UserController userController
 
     def setup() {
-        userController = new UserController(clock, userRepository, passwordEncoder)
+        userController = new UserController(clock, userRepository, passwordHasher, authTokenRevocations, objectMapper, { it.run() } as Executor)
     }
 
     def "can get all users"() {
+        given:
+        def output = new ByteArrayOutputStream()
+
+        when:
+        userController.getAllUsers().body.writeTo(output)
+
+        then:
+        1 * userRepository.forEach(_) >> { Consumer<User> action -> [aUser(1), aUser(2), aUser(3)].each { action.accept(it) } }
+        new JsonSlurper().parseText(output.toString("UTF-8"))*.id == [1, 2, 3]
+    }
+
+    def "changing roles invalidates the user's cached authentications"() {
+        given:
+        def user = aUser(1)
+
+        when:
+        userController.updateUser(1, UpdateUserRequest.builder().roles(roles).build())
+
+        then:
+        1 * userRepository.findById(1) >> Optional.of(user)
+        1 * userRepository.update(_) >> true
+        invalidations * authTokenRevocations.revokeUser(1)
+
+        where:
+        roles                                           | invalidations
+        null                                            | 0
+        Set.of(UserRole.ROLE_USER)                      | 0
+        Set.of(UserRole.ROLE_USER, UserRole.ROLE_ADMIN) | 1
+    }
+
+    def "new passwords are hashed on the password hasher before the update"() {
+        given:
+        def user = aUser(1)
+
         when:
-        userController.getAllUsers()
+        userController.updateUser(1, UpdateUserRequest.builder().password("new_password").build()).join()
 
         then:
-        1 * userRepository.findAll() >> [aUser(1), aUser(2), aUser(3)]
+        1 * userRepository.findById(1) >> Optional.of(user)
+        1 * passwordHasher.encode("new_password") >> CompletableFuture.completedFuture("hashed")
+        1 * userRepository.update({ it.password == "hashed" && it.username == user.username }) >> true
     }
 
     def User aUser(long userId) {
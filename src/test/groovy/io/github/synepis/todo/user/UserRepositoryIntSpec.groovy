@@ -6,6 +6,7 @@ import org.springframework.boot.test.context.SpringBootTest
 import org.springframework.dao.DuplicateKeyException
 
 import java.time.Instant
+import java.time.temporal.ChronoUnit
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 class UserRepositoryIntSpec extends IntegrationTestBaseSpec {
@@ -96,6 +97,31 @@ class UserRepositoryIntSpec extends IntegrationTestBaseSpec {
         user3 == retrieved.get(2)
     }
 
+    def "updateActivity(): applies buffered activity in one statement, never moving times backwards"() {
+        given:
+        def now = Instant.now().truncatedTo(ChronoUnit.MILLIS)
+        def user1 = userRepository.insert(aUser("user1"))
+        def user2 = userRepository.insert(aUser("user2").withLastLoginOn(now))
+
+        when:
+        def updated = userRepository.updateActivity([
+                UserActivity.builder().userId(user1.id).lastLoginOn(now).lastSeenOn(now.plusSeconds(5)).build(),
+                UserActivity.builder().userId(user2.id).lastLoginOn(now.minusSeconds(60)).lastSeenOn(now).build(),
+                UserActivity.builder().userId(-1).lastSeenOn(now).build()
+        ])
+
+        then:
+        updated == 2
+        with(userRepository.findById(user1.id).get()) {
+            lastLoginOn == now
+            lastSeenOn == now.plusSeconds(5)
+        }
+        with(userRepository.findById(user2.id).get()) {
+            lastLoginOn == now
+            lastSeenOn == now
+        }
+    }
+
     def aUser(String username) {
         return User.builder()
                 .username(username)
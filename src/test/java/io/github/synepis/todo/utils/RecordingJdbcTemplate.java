@@ -0,0 +1,52 @@
+package io.github.synepis.todo.utils;
+
+import lombok.Value;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs statements as usual, and remembers each one with its parameters so that it can be explained afterwards.
+ * Batches are remembered with their first set of parameters.
+ */
+public class RecordingJdbcTemplate extends NamedParameterJdbcTemplate {
+
+    private final List<Statement> statements = new ArrayList<>();
+
+    public RecordingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    public List<Statement> drain() {
+        var drained = List.copyOf(statements);
+        statements.clear();
+        return drained;
+    }
+
+    @Override
+    protected PreparedStatementCreator getPreparedStatementCreator(
+            String sql, SqlParameterSource paramSource, Consumer<PreparedStatementCreatorFactory> customizer) {
+        statements.add(new Statement(sql, paramSource));
+        return super.getPreparedStatementCreator(sql, paramSource, customizer);
+    }
+
+    @Override
+    public int[] batchUpdate(String sql, SqlParameterSource[] batchArgs) {
+        if (batchArgs.length > 0) {
+            statements.add(new Statement(sql, batchArgs[0]));
+        }
+        return super.batchUpdate(sql, batchArgs);
+    }
+
+    @Value
+    public static class Statement {
+        private String sql;
+        private SqlParameterSource params;
+    }
+}